@@ -0,0 +1,126 @@
+package tsp.distance;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * EUC_2D path kernel of {@link DistanceKernels} written with the Vector API
+ * (incubator module jdk.incubator.vector). This class is compiled separately,
+ * with javac --add-modules jdk.incubator.vector, and is only loaded by
+ * {@link DistanceKernels#get()} when the module is present. The GEO paths
+ * keep the scalar kernel, which is faster than the gathers of the three
+ * components of the unit vectors and the lane-wise arc cosine.
+ *
+ * Each lane computes a distance with the same floating point operations as
+ * the scalar code, in the same order, so it gets the same bits. A distance d
+ * between 0 and 2^52 is rounded to the nearest integer by adding 2^52, which
+ * rounds to the even integer as Math.rint does: the bits of d + 2^52 are
+ * then those of 2^52 plus the rounded distance, which gives the distance as
+ * a long without a conversion of the lanes (the conversion of doubles to
+ * longs is not compiled to vector instructions by JDK 17). The lanes whose
+ * distance is close to a half-integer, where the scalar code switches to its
+ * exact computation, are recomputed by the scalar code.
+ *
+ * @version 2017
+ */
+public class VectorDistanceKernels extends DistanceKernels {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/**
+	 * Species of the coordinates gathered along a path. The C2 compiler of
+	 * JDK 17 miscompiles some sequences of 512-bit gathers (wrong sums or a
+	 * crash of the JVM), so the paths are computed by 256-bit vectors.
+	 */
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_256;
+
+	/** Species of the distances of a path, with as many lanes as DOUBLES. */
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_256;
+
+	/** 2^52: the doubles between 2^52 and 2^53 are the integers. */
+	private static final double TWO_POW_52 = 4503599627370496.0;
+
+	/** Bits of the double 2^52. */
+	private static final long TWO_POW_52_BITS = Double.doubleToRawLongBits(TWO_POW_52);
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 */
+	public VectorDistanceKernels() {
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public long euclideanLength(double[] x, double[] y, int[] tour, int nbEdges) {
+		int lanes = DOUBLES.length();
+		LongVector sum = LongVector.zero(LONGS);
+		long length = 0;
+		int k = 0;
+		for (; k + lanes <= nbEdges; k += lanes) {
+			DoubleVector dx = DoubleVector.fromArray(DOUBLES, x, 0, tour, k)
+					.sub(DoubleVector.fromArray(DOUBLES, x, 0, tour, k + 1));
+			DoubleVector dy = DoubleVector.fromArray(DOUBLES, y, 0, tour, k)
+					.sub(DoubleVector.fromArray(DOUBLES, y, 0, tour, k + 1));
+			DoubleVector d = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT);
+			DoubleVector shifted = d.add(TWO_POW_52);
+			DoubleVector rounded = shifted.sub(TWO_POW_52);
+			LongVector distances = shifted.reinterpretAsLongs().sub(TWO_POW_52_BITS);
+			VectorMask<Double> exact = euclideanExact(d, rounded);
+			if (exact.anyTrue()) {
+				distances = distances.blend(0, exact.cast(LONGS));
+				for (int l = exact.firstTrue(); l < lanes; l++) {
+					if (exact.laneIsSet(l)) {
+						int a = tour[k + l];
+						int b = tour[k + l + 1];
+						length += EuclideanDistances.distance(x[a], y[a], x[b], y[b]);
+					}
+				}
+			}
+			sum = sum.add(distances);
+		}
+		length += sum.reduceLanes(VectorOperators.ADD);
+		for (; k < nbEdges; k++) {
+			int a = tour[k];
+			int b = tour[k + 1];
+			length += EuclideanDistances.distance(x[a], y[a], x[b], y[b]);
+		}
+		return length;
+	}
+
+	/**
+	 * @param d the euclidean distances
+	 * @param rounded d + 2^52 - 2^52
+	 * @return the lanes where rounded may differ from the rounding of
+	 *         EuclideanDistances.distance: near a half-integer, above 2^52, NaN
+	 */
+	private static VectorMask<Double> euclideanExact(DoubleVector d, DoubleVector rounded) {
+		DoubleVector margin = d.add(1.0).mul(EuclideanDistances.TIE_TOLERANCE);
+		return d.sub(rounded).lanewise(VectorOperators.ABS).sub(0.5).lanewise(VectorOperators.ABS)
+				.compare(VectorOperators.LE, margin)
+				.or(d.compare(VectorOperators.LT, TWO_POW_52).not());
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	@Override
+	public String getName() {
+		return "Vector API, " + DOUBLES.length() + " lanes";
+	}
+}
@@ -3,8 +3,24 @@ package tsp;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Locale;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+import tsp.distance.ACoordinateDistances;
+import tsp.distance.ADistanceMatrix;
+import tsp.distance.ATriangularDistanceMatrix;
+import tsp.distance.BufferDistanceMatrix;
+import tsp.distance.EuclideanDistances;
+import tsp.distance.GeoDistances;
+import tsp.io.TokenReader;
+import tsp.spatial.HilbertCurve;
+import tsp.spatial.KdTree;
 
 /**
  * The Instance class allows to create an object that contains the data stored
@@ -17,6 +33,36 @@ import java.util.Scanner;
  * The class is created through its constructor that takes the data file as
  * parameter. The data file is read and the data are stored in the Instance
  * object. The data can then be access calling the object methods.
+ * <br>
+ * The files are read by a streaming byte-level reader ({@link TokenReader});
+ * the way they are loaded can be configured with an {@link InstanceOptions}
+ * object.
+ * <br>
+ * The cities of the EUC_2D and GEO instances can be renumbered along a
+ * Hilbert curve when they are loaded (see
+ * {@link InstanceOptions#setRenumber(boolean)}), so that the rows of the
+ * distance matrix of nearby cities are close in memory. The city numbers
+ * used by the algorithms are then not the ones of the file:
+ * {@link #getOriginalIndex(int)} gives the number in the file, which is the
+ * one printed by {@link Solution#print(PrintStream)}. The labels follow
+ * their cities.
+ * <br>
+ * When the cache is enabled (see {@link InstanceOptions#setCache(boolean)}),
+ * the loaded instance is written in a binary file next to the tsp file, with
+ * the extension {@value #CACHE_EXTENSION}, and the later loadings map this
+ * file instead of parsing the tsp file and computing the distances. The
+ * cache file is little-endian and made of:
+ * 	- a header of {@value #CACHE_HEADER_SIZE} bytes: the magic number "TSPC",
+ * 	  the version of the format, the length and modification time of the tsp
+ * 	  file (the cache is rebuilt when they change), the number of cities, the
+ * 	  instance type, 1 for GEO instances, the size of a distance (2, 4 or 8
+ * 	  bytes), the number of candidates per city, 1 if the cities are
+ * 	  renumbered and the offset of the distances
+ * 	- the labels (length in bytes and ISO-8859-1 bytes)
+ * 	- the x then the y coordinates (as displayed), the candidate lists,
+ * 	  the numbers in the file of the renumbered cities
+ * 	- the distances, aligned on 8 bytes, in the layout of
+ * 	  {@link BufferDistanceMatrix}
  * 
  * @author Damien Prot, Fabien Lehuede, Axel Grimault
  * @version 2017
@@ -42,8 +88,11 @@ public class Instance {
 	/** Cities labels (read from the TSP files). */
 	private String[] m_labels;
 
-	/** Distance matrix */
-	private long[][] m_distances;
+	/** Distance matrix, whose storage depends on the range of the distances */
+	private ADistanceMatrix m_distances;
+
+	/** Distances computed from the coordinates (null for the EDGE_WEIGHT_SECTION files) */
+	private ACoordinateDistances m_coordinateDistances;
 
 	/** TSP file from the Euclidean tsp files of the TSPLib that is loaded. */
 	private String m_fileName;
@@ -51,6 +100,40 @@ public class Instance {
 	/** Instance type */
 	private int m_typeInstance;
 
+	/** Loading options */
+	private InstanceOptions m_options;
+
+	/** Time spent computing the distance matrix (in milliseconds) */
+	private long m_distancesTime;
+
+	/** Extension of the cache files. */
+	public static final String CACHE_EXTENSION = ".cache";
+
+	/** Magic number of the cache files ("TSPC" in little-endian). */
+	private static final int CACHE_MAGIC = 0x43505354;
+
+	/** Version of the format of the cache files. */
+	private static final int CACHE_VERSION = 2;
+
+	/** Size of the header of the cache files. */
+	private static final int CACHE_HEADER_SIZE = 56;
+
+	/** Default number of candidate cities kept for each city. */
+	public static final int DEFAULT_NB_CANDIDATES = 10;
+
+	/** Number of candidate cities kept for each city. */
+	private int m_nbCandidates;
+
+	/**
+	 * Candidate lists: the m_nbCandidates nearest cities of city i, sorted by
+	 * increasing distance, are stored in m_candidates[i*m_nbCandidates ...
+	 * (i+1)*m_nbCandidates - 1].
+	 */
+	private int[] m_candidates;
+
+	/** m_originalIndex[i] is the number in the file of city i, null if the cities are not renumbered */
+	private int[] m_originalIndex;
+
 
 
 	// -----------------------------
@@ -65,8 +148,25 @@ public class Instance {
 	 * @throws IOException Returns an error when a problem is met reading the data file.
 	 */
 	public Instance(String fileName, int typeInstance) throws IOException {
+		this(fileName, typeInstance, new InstanceOptions());
+	}
+
+	/**
+	 * Constructor: this method creates an object of class Instance. It calls
+	 * the read method to load the data file given as parameter.
+	 * 
+	 * @param fileName instance file
+	 * @param typeInstance 1 for EDGE_WEIGHT_SECTION files, 0 for coordinates files
+	 * @param options loading options
+	 * @throws IOException Returns an error when a problem is met reading the data file.
+	 */
+	public Instance(String fileName, int typeInstance, InstanceOptions options) throws IOException {
 		m_fileName = fileName;
 		m_typeInstance = typeInstance;
+		m_options = options;
+		if (m_options.isCache() && readCache()) {
+			return;
+		}
 		if(m_typeInstance == 1)
 		{
 			parseEdgeInstance();
@@ -75,6 +175,9 @@ public class Instance {
 		{
 			parse();
 		}
+		if (m_options.isCache() && !(m_distances instanceof ACoordinateDistances)) {
+			writeCache();
+		}
 	}
 	
 	
@@ -91,30 +194,15 @@ public class Instance {
 		if (!mfile.exists()) {
 			throw new IOException("The instance file : " + m_fileName + " does not exist.");
 		}
-		Scanner sc = new Scanner(mfile);
-
-		String line;
-		do
-		{
-			line = sc.nextLine();
-			System.err.println(line);
-		} while (!line.startsWith("DIMENSION"));
+		TokenReader reader = new TokenReader(mfile.toPath());
 
-		Scanner lineSc = new Scanner(line);
-		lineSc.next();
-		if (!lineSc.hasNextInt()) {
-			lineSc.next();
-		}
-		m_nbCities = lineSc.nextInt();
+		String line = readHeader(reader, "DIMENSION");
+		m_nbCities = parseDimension(line);
 		m_x = new double[m_nbCities];
 		m_y = new double[m_nbCities];
 		m_labels = new String[m_nbCities];
 
-		do {
-			line = sc.nextLine();
-			System.err.println(line);
-		} while (!line.startsWith("EDGE_WEIGHT_TYPE"));
-
+		line = readHeader(reader, "EDGE_WEIGHT_TYPE").trim();
 		if (line.endsWith("GEO")){
 			m_isGeographic = true;
 		}
@@ -124,49 +212,141 @@ public class Instance {
 		else{
 			System.err.println("Distance is not handled");
 		}
-		line = sc.nextLine();
-		line = sc.nextLine();
+		readHeader(reader, "NODE_COORD_SECTION");
 
 		int index = 0;
-		while ((!line.startsWith("EOF")) && (sc.hasNext())) {
-			if(index > m_nbCities)
-			{
-				System.exit(1);
+		while (index < m_nbCities && reader.hasNext()) {
+			String label = reader.next();
+			if (label.equals("EOF")) {
+				break;
 			}
-			// System.out.println(line);
-			lineSc = new Scanner(line);
-			lineSc.useLocale(Locale.US);
-			m_labels[index] = lineSc.next();
-			m_x[index] = lineSc.nextDouble();
-			m_y[index] = lineSc.nextDouble();
-			line = sc.nextLine();
+			m_labels[index] = label;
+			m_x[index] = reader.nextDouble();
+			m_y[index] = reader.nextDouble();
 			index++;
 		}
+		reader.close();
+		if (index < m_nbCities) {
+			throw new IOException("The instance file : " + m_fileName + " contains " + index
+					+ " cities instead of " + m_nbCities + ".");
+		}
 
-		// Create the distance matrix
-		m_distances = new long[m_nbCities][];
-		for (int i = 0; i < m_nbCities; i++) {
-			m_distances[i] = new long[m_nbCities];
+		// Renumber the cities along a Hilbert curve
+		if (m_options.isRenumber()) {
+			renumber(HilbertCurve.order(m_x, m_y));
+		}
+
+		// The distances are computed from the coordinates (the GEO coordinates
+		// are copied, since they are converted below for the display)
+		if (m_isGeographic) {
+			m_coordinateDistances = new GeoDistances(m_x.clone(), m_y.clone());
+		} else {
+			m_coordinateDistances = new EuclideanDistances(m_x, m_y);
+		}
+
+		// Above the threshold, they are computed on demand
+		if (m_nbCities > m_options.getMaxMatrixCities()) {
+			m_distances = m_coordinateDistances;
+			m_distancesTime = 0;
+			computeCandidates(DEFAULT_NB_CANDIDATES);
+			if (m_options.isCandidateCache()) {
+				m_coordinateDistances.setCandidates(m_candidates, m_nbCandidates);
+			}
+			convertGeoCoordinates();
+			return;
+		}
+
+		// Create the distance matrix, for distances up to the diameter of the instance
+		long maxDistance;
+		if (m_isGeographic) {
+			maxDistance = (long) Math.ceil(6378.388 * Math.PI) + 1;
+		} else {
+			maxDistance = (long) Math.rint(Math.hypot(getMax(m_x) - getMin(m_x), getMax(m_y) - getMin(m_y)));
+		}
+		try {
+			m_distances = ADistanceMatrix.create(m_nbCities, 0, maxDistance, m_options.isOffHeap());
+		} catch (Exception e) {
+			throw new IOException(e.getMessage());
 		}
 
 		// Compute distances
-		for (int i = 0; i < m_nbCities; i++) {
-			m_distances[i][i] = 0;
-			for (int j = i + 1; j < m_nbCities; j++) {
-				long dist = -1;
-				if (m_isGeographic)
-				{
-					dist = geoDist(i,j); 
-				}
-				else
-				{
-					dist = distance(i, j);
+		long start = System.currentTimeMillis();
+		if (m_options.isParallel()) {
+			// rows i and n-1-i together, so that every task computes about n distances
+			IntStream.range(0, (m_nbCities + 1) / 2).parallel().forEach(i -> {
+				computeRow(i);
+				if (m_nbCities - 1 - i != i) {
+					computeRow(m_nbCities - 1 - i);
 				}
-				m_distances[i][j] = dist;
-				m_distances[j][i] = dist;
+			});
+		} else {
+			for (int i = 0; i < m_nbCities; i++) {
+				computeRow(i);
 			}
 		}
+		m_distancesTime = System.currentTimeMillis() - start;
 		
+		computeCandidates(DEFAULT_NB_CANDIDATES);
+		convertGeoCoordinates();
+	}
+
+	/**
+	 * Builds a k-d tree over the cities, whose euclidean order is the order
+	 * of the distances (up to their rounding): the coordinates of the EUC_2D
+	 * cities, the unit vectors of the GEO cities on the sphere.
+	 * 
+	 * @return a new tree, null for the EDGE_WEIGHT_SECTION instances.
+	 */
+	public KdTree createKdTree() {
+		if (m_typeInstance == 1) {
+			return null;
+		}
+		if (m_isGeographic) {
+			if (m_coordinateDistances instanceof GeoDistances) {
+				return new KdTree(((GeoDistances) m_coordinateDistances).getUnitVectors(), 3);
+			}
+			// instance read from the cache: the degrees are recovered from the displayed coordinates
+			double[] longitudes = new double[m_nbCities];
+			double[] latitudes = new double[m_nbCities];
+			for (int i = 0; i < m_nbCities; i++) {
+				longitudes[i] = m_x[i] * (360.0/680) - 180;
+				latitudes[i] = -m_y[i] * (360.0/680) - 180;
+			}
+			return new KdTree(new GeoDistances(longitudes, latitudes).getUnitVectors(), 3);
+		}
+		double[] coords = new double[2 * m_nbCities];
+		for (int i = 0; i < m_nbCities; i++) {
+			coords[2 * i] = m_x[i];
+			coords[2 * i + 1] = m_y[i];
+		}
+		return new KdTree(coords, 2);
+	}
+
+	/**
+	 * Renumber the cities: the new city k is the city order[k] of the file.
+	 * 
+	 * @param order a permutation of the cities
+	 */
+	private void renumber(int[] order) {
+		double[] x = new double[m_nbCities];
+		double[] y = new double[m_nbCities];
+		String[] labels = new String[m_nbCities];
+		for (int k = 0; k < m_nbCities; k++) {
+			x[k] = m_x[order[k]];
+			y[k] = m_y[order[k]];
+			labels[k] = m_labels[order[k]];
+		}
+		m_x = x;
+		m_y = y;
+		m_labels = labels;
+		m_originalIndex = order;
+	}
+
+	/**
+	 * Converts the GEO coordinates for the display. The distances and the
+	 * candidates must be computed before.
+	 */
+	private void convertGeoCoordinates() {
 		if(m_isGeographic)
 		{
 			for(int i = 0; i < m_nbCities; i++)
@@ -177,9 +357,6 @@ public class Instance {
 				m_y[i] = -tempY;
 			}
 		}
-
-		sc.close();
-		lineSc.close();
 	}
 	
 	/**
@@ -191,93 +368,345 @@ public class Instance {
 		if (!mfile.exists()) {
 			throw new IOException("The instance file : " + m_fileName + " does not exist.");
 		}
-		Scanner sc = new Scanner(mfile);
+		TokenReader reader = new TokenReader(mfile.toPath());
 
-		String line;
-		do
-		{
-			line = sc.nextLine();
-			System.err.println(line);
-		} while (!line.startsWith("DIMENSION"));
-
-		Scanner lineSc = new Scanner(line);
-		lineSc.next();
-		if (!lineSc.hasNextInt()) {
-			lineSc.next();
-		}
-		m_nbCities = lineSc.nextInt();
+		String line = readHeader(reader, "DIMENSION");
+		m_nbCities = parseDimension(line);
 		m_x = new double[m_nbCities];
 		m_y = new double[m_nbCities];
 		m_labels = new String[m_nbCities];
 
-		do {
-			line = sc.nextLine();
-			System.err.println(line);
-		} while (!line.startsWith("EDGE_WEIGHT_SECTION"));
-
-
-		int index = 0;
+		readHeader(reader, "EDGE_WEIGHT_SECTION");
 
-		// Create the distance matrix
-		m_distances = new long[m_nbCities][];
 		for (int i = 0; i < m_nbCities; i++) {
-			m_distances[i] = new long[m_nbCities];
 			m_x[i] = 0;
 			m_x[i] = 0;
 			m_labels[i] = Integer.toString(i);
 		}
 		
-		line = sc.nextLine();
-		// Compute distances
+		long nbPairs = (long) m_nbCities * (m_nbCities - 1) / 2;
+		if (!m_options.isOffHeap() && nbPairs > ATriangularDistanceMatrix.MAX_ENTRIES) {
+			reader.close();
+			throw new IOException("Error : " + m_nbCities + " cities are too many for a distance matrix on the heap ("
+					+ nbPairs + " pairs), the matrix should be stored off the heap.");
+		}
+
+		// First pass on the distances (upper triangle, row by row): their range gives the storage of the matrix
+		long minDistance = 0;
+		long maxDistance = 0;
+		for (long k = 0; k < nbPairs; k++) {
+			long distance = reader.nextLong();
+			minDistance = Math.min(minDistance, distance);
+			maxDistance = Math.max(maxDistance, distance);
+		}
+		reader.close();
+
+		try {
+			m_distances = ADistanceMatrix.create(m_nbCities, minDistance, maxDistance, m_options.isOffHeap());
+		} catch (Exception e) {
+			throw new IOException(e.getMessage());
+		}
+
+		// Second pass: the distances are read straight into the matrix
+		reader = new TokenReader(mfile.toPath());
+		String header;
+		do
+		{
+			header = reader.nextLine();
+		} while (!header.trim().startsWith("EDGE_WEIGHT_SECTION"));
 		for (int i = 0; i < m_nbCities-1; i++) {
-			m_distances[i][i] = 0;
-			lineSc = new Scanner(line);
-			lineSc.useLocale(Locale.US);
 			for (int j = i + 1; j < m_nbCities; j++) {
-				long dist = lineSc.nextInt();
-//				System.out.println(dist);
-				m_distances[i][j] = dist;
-				m_distances[j][i] = dist;
+				m_distances.set(i, j, reader.nextLong());
 			}
-			line = sc.nextLine();
 		}
+		reader.close();
 
-		sc.close();
-		lineSc.close();
+		computeCandidates(DEFAULT_NB_CANDIDATES);
 	}
 
 	/**
-	 * Computes the geographical distance between two cities
-	 * @param i the first index
-	 * @param j the second index
-	 * @return the geographical distance between i and j 
+	 * Computes the distances between city i and the cities j > i from the
+	 * coordinates, and stores them in the matrix. Each pair is computed by exactly
+	 * one call, so the rows can be computed in parallel and the matrix does
+	 * not depend on the order of the calls.
+	 * 
+	 * @param i the row
 	 */
-	private long geoDist(int i, int j) {
+	private void computeRow(int i) {
+		for (int j = i + 1; j < m_nbCities; j++) {
+			m_distances.set(i, j, m_coordinateDistances.get(i, j));
+		}
+	}
 
-		double PI = 3.141592;
-		double longRadianI = PI*m_x[i]/180.0;
-		double latRadianI = PI*m_y[i]/180.0;
-		double longRadianJ = PI*m_x[j]/180.0;
-		double latRadianJ = PI*m_y[j]/180.0;
-		double RRR = 6378.388;
-		double q1 = Math.cos(longRadianI - longRadianJ);
-		double q2 = Math.cos(latRadianI - latRadianJ);
-		double q3 = Math.cos(latRadianI + latRadianJ);
+	/**
+	 * Read the header lines up to the line starting with keyword, echoing
+	 * them on System.err if the options ask for it.
+	 * 
+	 * @param reader the reader of the file
+	 * @param keyword the first word of the last line to read
+	 * @return the line starting with keyword
+	 * @throws IOException if the end of the file is reached before keyword
+	 */
+	private String readHeader(TokenReader reader, String keyword) throws IOException {
+		String line;
+		do
+		{
+			line = reader.nextLine();
+			if (line == null) {
+				throw new IOException("The instance file : " + m_fileName + " has no " + keyword + " line.");
+			}
+			if (m_options.isEchoHeader()) {
+				System.err.println(line);
+			}
+		} while (!line.trim().startsWith(keyword));
+		return line;
+	}
 
-		int res = (int) (RRR*Math.acos(0.5*((1.0+q1)*q2-(1.0-q1)*q3))+1.0);
-		return res;
+	/**
+	 * @param line a line "DIMENSION : n" or "DIMENSION: n"
+	 * @return the number n
+	 * @throws IOException if the line does not end with a number
+	 */
+	private int parseDimension(String line) throws IOException {
+		String value = line.trim().substring("DIMENSION".length()).trim();
+		if (value.startsWith(":")) {
+			value = value.substring(1).trim();
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IOException("The instance file : " + m_fileName + " has an invalid dimension line: " + line);
+		}
 	}
 
 	/**
+	 * Load the instance from its cache file, if it is valid.
 	 * 
-	 * @param i the first index
-	 * @param j the second index
-	 * @return the euclidian distance between i and j 
+	 * @return `true` if the instance was loaded, `false` if there is no valid cache file
+	 * @throws IOException if the cache file cannot be read
+	 */
+	private boolean readCache() throws IOException {
+		File source = new File(m_fileName);
+		File cache = new File(m_fileName + CACHE_EXTENSION);
+		if (!source.exists() || !cache.exists()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < CACHE_HEADER_SIZE) {
+				return false;
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, CACHE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != CACHE_MAGIC || header.getInt(4) != CACHE_VERSION
+					|| header.getLong(8) != source.length() || header.getLong(16) != source.lastModified()
+					|| header.getInt(28) != m_typeInstance) {
+				return false;
+			}
+			int nbCities = header.getInt(24);
+			int nbCandidates = Math.max(0, Math.min(DEFAULT_NB_CANDIDATES, nbCities - 1));
+			int entrySize = header.getInt(36);
+			long matrixOffset = header.getLong(48);
+			if (header.getInt(40) != nbCandidates || (m_typeInstance != 1 && nbCities > m_options.getMaxMatrixCities())) {
+				return false;
+			}
+			boolean renumbered = (header.getInt(44) == 1);
+			if (renumbered != (m_typeInstance != 1 && m_options.isRenumber())) {
+				return false;
+			}
+			if (matrixOffset + BufferDistanceMatrix.getNbBytes(nbCities, entrySize) != channel.size()) {
+				return false;
+			}
+
+			m_nbCities = nbCities;
+			m_isGeographic = (header.getInt(32) == 1);
+			m_nbCandidates = nbCandidates;
+			m_labels = new String[m_nbCities];
+			m_x = new double[m_nbCities];
+			m_y = new double[m_nbCities];
+			m_candidates = new int[m_nbCities * m_nbCandidates];
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, CACHE_HEADER_SIZE, matrixOffset - CACHE_HEADER_SIZE)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			for (int i = 0; i < m_nbCities; i++) {
+				byte[] label = new byte[data.getInt()];
+				data.get(label);
+				m_labels[i] = new String(label, StandardCharsets.ISO_8859_1);
+			}
+			data.asDoubleBuffer().get(m_x).get(m_y);
+			data.position(data.position() + 16 * m_nbCities);
+			data.asIntBuffer().get(m_candidates);
+			if (renumbered) {
+				data.position(data.position() + 4 * m_candidates.length);
+				m_originalIndex = new int[m_nbCities];
+				data.asIntBuffer().get(m_originalIndex);
+			}
+			m_distances = BufferDistanceMatrix.map(channel, matrixOffset, m_nbCities, entrySize);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("The cache file : " + cache + " cannot be read: " + e.getMessage());
+		}
+		m_distancesTime = 0;
+		return true;
+	}
+
+	/**
+	 * Write the instance in its cache file. The file is written under a
+	 * temporary name and then renamed, so that a partial file is never read.
+	 * A warning is printed if it cannot be written.
 	 */
-	private long distance(int i, int j) {
-		double dx = m_x[i] - m_x[j];
-		double dy = m_y[i] - m_y[j];
-		return (long) Math.rint(Math.hypot(dx, dy));
+	private void writeCache() {
+		File source = new File(m_fileName);
+		File cache = new File(m_fileName + CACHE_EXTENSION);
+		File temporary = new File(m_fileName + CACHE_EXTENSION + ".tmp");
+		try {
+			byte[][] labels = new byte[m_nbCities][];
+			long dataSize = 16L * m_nbCities + 4L * m_candidates.length;
+			if (m_originalIndex != null) {
+				dataSize += 4L * m_nbCities;
+			}
+			for (int i = 0; i < m_nbCities; i++) {
+				labels[i] = m_labels[i].getBytes(StandardCharsets.ISO_8859_1);
+				dataSize += 4 + labels[i].length;
+			}
+			long matrixOffset = (CACHE_HEADER_SIZE + dataSize + 7) & ~7L;
+			if (matrixOffset > Integer.MAX_VALUE) {
+				throw new IOException("the labels, coordinates and candidates take more than 2 GB");
+			}
+			int entrySize = BufferDistanceMatrix.getEntrySize(m_distances);
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) matrixOffset).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putLong(source.length()).putLong(source.lastModified());
+			buffer.putInt(m_nbCities).putInt(m_typeInstance).putInt(m_isGeographic ? 1 : 0).putInt(entrySize);
+			buffer.putInt(m_nbCandidates).putInt(m_originalIndex != null ? 1 : 0).putLong(matrixOffset);
+			for (int i = 0; i < m_nbCities; i++) {
+				buffer.putInt(labels[i].length).put(labels[i]);
+			}
+			buffer.asDoubleBuffer().put(m_x).put(m_y);
+			buffer.position(buffer.position() + 16 * m_nbCities);
+			buffer.asIntBuffer().put(m_candidates);
+			if (m_originalIndex != null) {
+				buffer.position(buffer.position() + 4 * m_candidates.length);
+				buffer.asIntBuffer().put(m_originalIndex);
+			}
+			buffer.clear();
+
+			try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				BufferDistanceMatrix.write(m_distances, entrySize, channel);
+			}
+			Files.move(temporary.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Warning : the cache file " + cache + " cannot be written: " + e.getMessage());
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Computes the candidate lists, that is the k nearest cities of each city.
+	 * For EUC_2D and GEO instances the neighbors are found with a k-d tree
+	 * built on the coordinates (on the unit sphere for GEO instances, where the
+	 * chord length orders the cities as the geographical distance does). For
+	 * the instances given by their distance matrix, each row is scanned once
+	 * keeping the k smallest distances in a bounded heap.
+	 *
+	 * This method must be called before the GEO coordinates are converted for
+	 * the display.
+	 *
+	 * @param k the number of candidates per city
+	 */
+	private void computeCandidates(int k) {
+		m_nbCandidates = Math.max(0, Math.min(k, m_nbCities - 1));
+		m_candidates = new int[m_nbCities * m_nbCandidates];
+		if (m_nbCandidates == 0) {
+			return;
+		}
+		// pairs (distance, city) ordered by distance, then by city number
+		long[] distances = new long[m_nbCandidates];
+		int[] cities = new int[m_nbCandidates];
+		if (m_typeInstance == 1) {
+			for (int i = 0; i < m_nbCities; i++) {
+				int size = 0;
+				for (int j = 0; j < m_nbCities; j++) {
+					if (j == i) {
+						continue;
+					}
+					long distance = m_distances.get(i, j);
+					if (size < m_nbCandidates) {
+						heapPush(distances, cities, size++, distance, j);
+					} else if (isGreater(distances[0], cities[0], distance, j)) {
+						heapReplaceTop(distances, cities, size, distance, j);
+					}
+				}
+				heapSort(distances, cities, size);
+				System.arraycopy(cities, 0, m_candidates, i * m_nbCandidates, size);
+			}
+		} else {
+			KdTree tree = createKdTree();
+			int[] neighbors = new int[m_nbCandidates];
+			for (int i = 0; i < m_nbCities; i++) {
+				tree.nearestNeighbors(i, m_nbCandidates, neighbors);
+				// the rounded distances may tie cities that the coordinates separate
+				for (int r = 0; r < m_nbCandidates; r++) {
+					heapPush(distances, cities, r, m_distances.get(i, neighbors[r]), neighbors[r]);
+				}
+				heapSort(distances, cities, m_nbCandidates);
+				System.arraycopy(cities, 0, m_candidates, i * m_nbCandidates, m_nbCandidates);
+			}
+		}
+	}
+
+	/** @return `true` if the pair (d1,c1) comes after (d2,c2): greater distance, or same distance and greater city */
+	private static boolean isGreater(long d1, int c1, long d2, int c2) {
+		return (d1 > d2) || (d1 == d2 && c1 > c2);
+	}
+
+	/** Inserts the pair (distance, city) in the max-heap of pairs stored in distances[0..size-1] and cities[0..size-1]. */
+	private static void heapPush(long[] distances, int[] cities, int size, long distance, int city) {
+		int i = size;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!isGreater(distance, city, distances[parent], cities[parent])) {
+				break;
+			}
+			distances[i] = distances[parent];
+			cities[i] = cities[parent];
+			i = parent;
+		}
+		distances[i] = distance;
+		cities[i] = city;
+	}
+
+	/** Replaces the greatest pair of the max-heap of size pairs by (distance, city). */
+	private static void heapReplaceTop(long[] distances, int[] cities, int size, long distance, int city) {
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && isGreater(distances[child + 1], cities[child + 1], distances[child], cities[child])) {
+				child++;
+			}
+			if (!isGreater(distances[child], cities[child], distance, city)) {
+				break;
+			}
+			distances[i] = distances[child];
+			cities[i] = cities[child];
+			i = child;
+		}
+		distances[i] = distance;
+		cities[i] = city;
+	}
+
+	/** Sorts the max-heap of size pairs in increasing order. */
+	private static void heapSort(long[] distances, int[] cities, int size) {
+		for (int last = size - 1; last > 0; last--) {
+			long distance = distances[last];
+			int city = cities[last];
+			distances[last] = distances[0];
+			cities[last] = cities[0];
+			heapReplaceTop(distances, cities, last, distance, city);
+		}
 	}
 
 	/**
@@ -351,10 +780,15 @@ public class Instance {
 	 */
 	public void print(PrintStream out) {
 
+		// rows and columns in the order of the file
+		int[] city = new int[m_nbCities];
+		for (int i = 0; i < m_nbCities; i++) {
+			city[getOriginalIndex(i)] = i;
+		}
 		out.println("Distance matrix:");
 		for (int i = 0; i < m_nbCities; i++) {
 			for (int j = 0; j < m_nbCities; j++) {
-				out.print(m_distances[i][j] + ";");
+				out.print(m_distances.get(city[i], city[j]) + ";");
 			}
 			out.println();
 		}
@@ -428,8 +862,9 @@ public class Instance {
 
 	/**
 	 * Returns the euclidean distance rounded to the nearest integer value
-	 * between two cities. All distances are calculated when the tsp file is
-	 * loaded, so this function does not calculate distances. Note: problems are
+	 * between two cities. The distances are calculated when the tsp file is
+	 * loaded, except for the instances too large for a distance matrix (see
+	 * {@link InstanceOptions#getMaxMatrixCities()}). Note: problems are
 	 * symmetric, the distance from city i to city j is equal to the
 	 * distance from j to i.
 	 * 
@@ -446,16 +881,115 @@ public class Instance {
 		if((j < 0) || (j >= m_nbCities)) {
 			throw new Exception("Error : city index " + j + " should range between 0 and " + (m_nbCities - 1) + ".");
 		}
-		return m_distances[i][j];
+		return m_distances.get(i, j);
+	}
+
+	/**
+	 * Same as {@link #getDistances(int, int)} without the range checks on the
+	 * city numbers. This accessor is meant for the inner loops of the local
+	 * search engines, whose city numbers always come from a valid tour.
+	 *
+	 * @param i origin city (must range between 0 and nbcity-1).
+	 * @param j destination city (must range between 0 and nbcity-1).
+	 * @return Returns the distance from i to j
+	 */
+	public long getDistancesUnchecked(int i, int j) {
+		return m_distances.get(i, j);
+	}
+
+	/**
+	 * Returns the length of the path tour[0], tour[1], ..., tour[nbEdges].
+	 * 
+	 * @param tour a sequence of cities (should range between 0 and nbcity-1).
+	 * @param nbEdges the number of edges of the path.
+	 * @return the sum of the distances between consecutive cities of tour.
+	 * @throws Exception returns an error if a city of the path is not a valid city number.
+	 */
+	public long getLength(int[] tour, int nbEdges) throws Exception {
+		for (int k = 0; k <= nbEdges; k++) {
+			if((tour[k] < 0) || (tour[k] >= m_nbCities)) {
+				throw new Exception("Error : city index " + tour[k] + " should range between 0 and " + (m_nbCities - 1) + ".");
+			}
+		}
+		return m_distances.getLength(tour, nbEdges);
 	}
 
 	/**
-	 * @return Returns the whole distance matrix.
+	 * Returns the length of the closed tour tour[0], tour[1], ...,
+	 * tour[nbCities-1], tour[0], without the checks of
+	 * {@link #getLength(int[], int)}. The metaheuristics compute the length
+	 * of their tours with this method, which sums the distances with the
+	 * kernels of {@link tsp.distance.DistanceKernels} when the distances are
+	 * computed from the coordinates.
+	 *
+	 * @param tour a tour (its cities must range between 0 and nbcity-1).
+	 * @param nbCities the number of cities of the tour, at least 1.
+	 * @return the sum of the distances between consecutive cities of the tour.
 	 */
-	public long[][] getDistances() {
+	public long getTourLengthUnchecked(int[] tour, int nbCities) {
+		return m_distances.getLength(tour, nbCities - 1) + m_distances.get(tour[nbCities - 1], tour[0]);
+	}
+
+	/**
+	 * @return Returns the whole distance matrix (an {@link ACoordinateDistances}
+	 *         when the distances are computed on demand).
+	 */
+	public ADistanceMatrix getDistanceMatrix() {
 		return m_distances;
 	}
 
+	/** @return the time spent computing the distance matrix (in milliseconds, 0 when it is read from the file or not stored) */
+	public long getDistancesTime() {
+		return m_distancesTime;
+	}
+
+	/** @return the number of candidate cities stored for each city */
+	public int getNbCandidates() {
+		return m_nbCandidates;
+	}
+
+	/**
+	 * Returns the candidate lists of all cities in a single array: the
+	 * candidates of city i, sorted by increasing distance from i, are stored
+	 * between indices i*getNbCandidates() and (i+1)*getNbCandidates() - 1.
+	 * The returned array is shared and must not be modified.
+	 *
+	 * @return the candidate lists
+	 */
+	public int[] getCandidates() {
+		return m_candidates;
+	}
+
+	/**
+	 * @param i city number (should range between 0 and nbcity-1).
+	 * @param rank rank of the candidate (should range between 0 and getNbCandidates()-1).
+	 * @return the rank-th nearest city of city i.
+	 * @throws Exception returns an error if i or rank are not valid.
+	 */
+	public int getCandidate(int i, int rank) throws Exception {
+		if((i < 0) || (i >= m_nbCities)) {
+			throw new Exception("Error : city index " + i + " should range between 0 and " + (m_nbCities - 1) + ".");
+		}
+		if((rank < 0) || (rank >= m_nbCandidates)) {
+			throw new Exception("Error : candidate rank " + rank + " should range between 0 and " + (m_nbCandidates - 1) + ".");
+		}
+		return m_candidates[i * m_nbCandidates + rank];
+	}
+
+	/** @return `true` if the cities are renumbered, see {@link #getOriginalIndex(int)} */
+	public boolean isRenumbered() {
+		return m_originalIndex != null;
+	}
+
+	/**
+	 * @param i city number (must range between 0 and nbcity-1).
+	 * @return the number of city i in the file, that is i if the cities are
+	 *         not renumbered.
+	 */
+	public int getOriginalIndex(int i) {
+		return (m_originalIndex == null) ? i : m_originalIndex[i];
+	}
+
 	/**
 	 * @return Return the name of the instance file.
 	 */
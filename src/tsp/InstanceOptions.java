@@ -0,0 +1,179 @@
+package tsp;
+
+/**
+ * Options of the loading of an {@link Instance}.
+ *
+ * The default options reproduce the historical behavior: the header lines of
+ * the file are echoed on System.err. The distance matrix is computed in
+ * parallel by default; the result is identical to the sequential one.
+ *
+ * The EUC_2D and GEO instances of more than {@link #getMaxMatrixCities()}
+ * cities do not store a distance matrix: their distances are computed on
+ * demand from the coordinates, with the same rounding.
+ *
+ * The cities of the EUC_2D and GEO instances can be renumbered along a
+ * Hilbert curve, see {@link Instance}.
+ *
+ * The distance matrix can be stored off the Java heap, so that the garbage
+ * collector neither scans nor moves it.
+ *
+ * With the cache, an instance with a distance matrix is saved in a binary
+ * file next to the tsp file, and mapped from this file by the later
+ * loadings (see {@link Instance}).
+ *
+ * @version 2017
+ */
+public class InstanceOptions {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** `true` if the header lines of the file are echoed on System.err. */
+	private boolean m_echoHeader;
+
+	/** `true` if the rows of the distance matrix are computed in parallel. */
+	private boolean m_parallel;
+
+	/** Default greatest number of cities of a coordinates instance with a distance matrix. */
+	public static final int DEFAULT_MAX_MATRIX_CITIES = 10000;
+
+	/** Greatest number of cities of a coordinates instance with a distance matrix. */
+	private int m_maxMatrixCities;
+
+	/** `true` if the distances computed on demand are cached for the candidate edges. */
+	private boolean m_candidateCache;
+
+	/** `true` if the instance is saved in and loaded from a binary cache file. */
+	private boolean m_cache;
+
+	/** `true` if the distance matrix is stored off the Java heap. */
+	private boolean m_offHeap;
+
+	/** `true` if the cities of the coordinates instances are renumbered along a Hilbert curve. */
+	private boolean m_renumber;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Creates the default options.
+	 */
+	public InstanceOptions() {
+		m_echoHeader = true;
+		m_parallel = true;
+		m_maxMatrixCities = DEFAULT_MAX_MATRIX_CITIES;
+		m_candidateCache = false;
+		m_cache = false;
+		m_offHeap = false;
+		m_renumber = false;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return `true` if the header lines of the file are echoed on System.err */
+	public boolean isEchoHeader() {
+		return m_echoHeader;
+	}
+
+	/**
+	 * Sets whether the header lines of the file are echoed on System.err.
+	 * @param echoHeader `true` to echo the header lines
+	 */
+	public void setEchoHeader(boolean echoHeader) {
+		m_echoHeader = echoHeader;
+	}
+
+	/** @return `true` if the rows of the distance matrix are computed in parallel */
+	public boolean isParallel() {
+		return m_parallel;
+	}
+
+	/**
+	 * Sets whether the rows of the distance matrix are computed in parallel
+	 * (in the common fork-join pool).
+	 * @param parallel `true` to compute the rows in parallel
+	 */
+	public void setParallel(boolean parallel) {
+		m_parallel = parallel;
+	}
+
+	/** @return the greatest number of cities of a coordinates instance with a distance matrix */
+	public int getMaxMatrixCities() {
+		return m_maxMatrixCities;
+	}
+
+	/**
+	 * Sets the number of cities above which the distances of the EUC_2D and
+	 * GEO instances are computed on demand instead of being stored.
+	 * @param maxMatrixCities the number of cities, 0 to never store the distances
+	 */
+	public void setMaxMatrixCities(int maxMatrixCities) {
+		m_maxMatrixCities = Math.max(0, maxMatrixCities);
+	}
+
+	/** @return `true` if the distances computed on demand are cached for the candidate edges */
+	public boolean isCandidateCache() {
+		return m_candidateCache;
+	}
+
+	/**
+	 * Sets whether the distances computed on demand between each city and
+	 * its candidates are cached (8 bytes per candidate). This only pays off
+	 * when a distance is more expensive to compute than a scan of the
+	 * candidates of a city.
+	 * @param candidateCache `true` to cache the candidate distances
+	 */
+	public void setCandidateCache(boolean candidateCache) {
+		m_candidateCache = candidateCache;
+	}
+
+	/** @return `true` if the instance is saved in and loaded from a binary cache file */
+	public boolean isCache() {
+		return m_cache;
+	}
+
+	/**
+	 * Sets whether the instance is loaded from its binary cache file when it
+	 * is up to date, and saved in it otherwise. The header lines are not
+	 * echoed when the cache file is loaded.
+	 * @param cache `true` to use the cache file
+	 */
+	public void setCache(boolean cache) {
+		m_cache = cache;
+	}
+
+	/** @return `true` if the distance matrix is stored off the Java heap */
+	public boolean isOffHeap() {
+		return m_offHeap;
+	}
+
+	/**
+	 * Sets whether the distance matrix is stored in direct buffers, off the
+	 * Java heap. Its size is then bounded by the -XX:MaxDirectMemorySize
+	 * option of the JVM instead of -Xmx.
+	 * @param offHeap `true` to store the distance matrix off the Java heap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		m_offHeap = offHeap;
+	}
+
+	/** @return `true` if the cities of the coordinates instances are renumbered along a Hilbert curve */
+	public boolean isRenumber() {
+		return m_renumber;
+	}
+
+	/**
+	 * Sets whether the cities of the EUC_2D and GEO instances are renumbered
+	 * along a Hilbert curve, so that nearby cities have nearby numbers.
+	 * @param renumber `true` to renumber the cities
+	 */
+	public void setRenumber(boolean renumber) {
+		m_renumber = renumber;
+	}
+}
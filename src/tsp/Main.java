@@ -59,6 +59,14 @@ public class Main {
 	 *  - -t (int) :maximum number of seconds given to the algorithm
 	 *  - -g : graphical output of the solution
 	 *  - -v : trace level (print the solution at the end if true)
+	 *  - -i (int) : instance type (1 for EDGE_WEIGHT_SECTION files)
+	 *  - -a (string) : algorithm (2opt by default, dlb, lk, ils, mmas, sa, tabu, ga)
+	 *  - -c (string) : acceptance criterion of ils (better, equal by default, restart)
+	 *  - -p (int) : number of threads of 2opt, dlb, lk, mmas and ga (1 by default, 0 for all the available processors); ils, sa and tabu need 1
+	 *  - -m (int) : number of cities above which the distances are not stored
+	 *  - -b : load the instance from its binary cache file, written if needed
+	 *  - -o : store the distance matrix off the Java heap (see -XX:MaxDirectMemorySize)
+	 *  - -s : renumber the cities along a Hilbert curve (the file numbers are printed)
 	 * 
 	 * **Program output**: fileName;routeLength;time;e 
 	 * 
@@ -75,6 +83,13 @@ public class Main {
 		boolean verbose = false;
 		boolean graphical = false;
 		int typeInstance = 0;
+		String method = "2opt";
+		int nbThreads = 1;
+		String acceptance = "equal";
+		int maxMatrixCities = InstanceOptions.DEFAULT_MAX_MATRIX_CITIES;
+		boolean cache = false;
+		boolean offHeap = false;
+		boolean renumber = false;
 
 		// Parse commande line
 		for (int i = 0; i < args.length; i++) {
@@ -87,10 +102,24 @@ public class Main {
 				System.err.println("\t-t\t\t: maximum number of seconds given to the algorithm (int)");
 				System.err.println("\t-g\t\t: graphical output of the solution");
 				System.err.println("\t-v\t\t: trace level");
+				System.err.println("\t-i\t\t: instance type, 1 for EDGE_WEIGHT_SECTION files (int)");
+				System.err.println("\t-a\t\t: algorithm: 2opt (default), dlb, lk, ils, mmas, sa, tabu, ga (string)");
+				System.err.println("\t-c\t\t: acceptance criterion of ils: better, equal (default), restart (string)");
+				System.err.println("\t-p\t\t: number of threads of 2opt, dlb, lk, mmas, ga (ils, sa, tabu: 1), 0 for all the processors (int)");
+				System.err.println("\t-m\t\t: number of cities above which the distances are not stored (int)");
+				System.err.println("\t-b\t\t: load the instance from its binary cache file, written if needed");
+				System.err.println("\t-o\t\t: store the distance matrix off the Java heap (see -XX:MaxDirectMemorySize)");
+				System.err.println("\t-s\t\t: renumber the cities along a Hilbert curve (the file numbers are printed)");
 				return;
 
 			} else if (args[i].compareTo("-v") == 0) {
 				verbose = true;
+			} else if (args[i].compareTo("-b") == 0) {
+				cache = true;
+			} else if (args[i].compareTo("-o") == 0) {
+				offHeap = true;
+			} else if (args[i].compareTo("-s") == 0) {
+				renumber = true;
 			} else if (args[i].compareTo("-g") == 0) {
 				graphical = true;
 			} else if (args[i].compareTo("-t") == 0) {
@@ -107,6 +136,35 @@ public class Main {
 					System.out.println("error : the type of instance is not a valid type");
 					System.exit(1);
 				}
+			} else if (args[i].compareTo("-a") == 0) {
+				if (i + 1 >= args.length) {
+					System.out.println("Error: an algorithm name is expected after -a.");
+					System.exit(1);
+				}
+				method = args[++i];
+			} else if (args[i].compareTo("-c") == 0) {
+				if (i + 1 >= args.length) {
+					System.out.println("Error: an acceptance criterion is expected after -c.");
+					System.exit(1);
+				}
+				acceptance = args[++i];
+			} else if (args[i].compareTo("-p") == 0) {
+				try {
+					nbThreads = Integer.parseInt(args[++i]);
+				} catch (Exception e) {
+					System.out.println("Error: The number of threads given for -p is not a valid integer value.");
+					System.exit(1);
+				}
+				if (nbThreads <= 0) {
+					nbThreads = Runtime.getRuntime().availableProcessors();
+				}
+			} else if (args[i].compareTo("-m") == 0) {
+				try {
+					maxMatrixCities = Integer.parseInt(args[++i]);
+				} catch (Exception e) {
+					System.out.println("Error: The number of cities given for -m is not a valid integer value.");
+					System.exit(1);
+				}
 			} else {
 				if (filename != null) {
 					System.err.println("Error: There is a problem in the program parameters.");
@@ -121,10 +179,20 @@ public class Main {
 		try {
 			
 			// Read data
-			Instance data = new Instance(filename, typeInstance);
+			InstanceOptions options = new InstanceOptions();
+			options.setEchoHeader(verbose);
+			options.setMaxMatrixCities(maxMatrixCities);
+			options.setCache(cache);
+			options.setOffHeap(offHeap);
+			options.setRenumber(renumber);
+			Instance data = new Instance(filename, typeInstance, options);
 			
 			// Create a new problem
 			TSPSolver tsp = new TSPSolver(data,max_time);
+			tsp.setMethod(method);
+			tsp.setNbThreads(nbThreads);
+			tsp.setAcceptance(acceptance);
+			tsp.setVerbose(verbose);
 
 			// Solve the problem
 			long t = System.currentTimeMillis();
@@ -155,6 +223,9 @@ public class Main {
 
 			// If verbose, print the solution
 			if (verbose) {
+				System.err.println("Distance matrix computed in " + data.getDistancesTime() + " ms ("
+						+ data.getDistanceMatrix().getClass().getSimpleName() + ", "
+						+ data.getDistanceMatrix().getMemorySize() + " bytes)");
 				data.print(System.err);
 				tsp.getSolution().print(System.err);
 				if (e == 1)
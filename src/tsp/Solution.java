@@ -50,7 +50,13 @@ import java.util.Arrays;
  * mySolution.setVertexPosition(0, instance.getNbCities());
  * ~~~~~~~~~~~~~~~~~~~~~~~~~~~~
  * 
- * To explore a {@link Solution} object, the city at position can be obtained calling {@link #getCity(int position)}.
+ * To explore a {@link Solution} object, the city at position can be obtained calling {@link #getCity(int position)}
+ * and the position of a city calling {@link #getPosition(int city)}: the solution maintains the inverse permutation
+ * #m_positions of #m_cities.
+ * 
+ * A whole tour can be copied in one call with {@link #setTour(int[])} and {@link #copyTourInto(int[])}.
+ * The methods suffixed by `Unchecked` skip the range checks and do not throw exceptions: they are meant for
+ * hot loops on indices that are known to be valid.
  * 
  * The {@link #isFeasible} method allows to check the feasibility of a solution.
  * 
@@ -59,6 +65,11 @@ import java.util.Arrays;
  * Note that {@link #evaluate()} recomputes every distance from zero. If you do a slight modification of the solution it is less time consuming to update
  * yourself the cost of the modified solution using the function {@link #setObjectiveValue(long newValue)}.
  * 
+ * The classical moves can also be applied with {@link #apply2OptMove(int, int)}, {@link #applySwapMove(int, int)},
+ * {@link #applyOrOptMove(int, int, int, boolean)} and {@link #applyDoubleBridgeMove(int, int, int)}: they update the
+ * objective value with the variation of the length of the modified edges and return this variation, so the objective
+ * value stays current if it was current before the move. The city at positions 0 and #m_nbCities is never moved.
+ * 
  * 
  * @author Damien Prot, Fabien Lehuede, Axel Grimault
  * @version 2017
@@ -77,6 +88,13 @@ public class Solution{
 	 */
 	private int[] m_cities;
 
+	/**
+	 * Inverse permutation of #m_cities on the positions 0..#m_nbCities-1.<br>
+	 * #m_positions[c] is the position of city c in the solution, -1 if c is not in the solution.
+	 * When a city is set at several positions, the last one is kept.
+	 */
+	private int[] m_positions;
+
 	/**
 	 * Route cost or length (objective function).<br>
 	 * This value should be updated when the solution is modified with:
@@ -94,6 +112,9 @@ public class Solution{
 	/** Error code returned by {@link #isFeasible()} */
 	private String m_error;
 
+	/** Buffer used by the moves, allocated on first use. */
+	private int[] m_buffer;
+
 
 	// -----------------------------
 	// ----- CONSTRUCTOR -----------
@@ -107,6 +128,11 @@ public class Solution{
 		m_instance = instance;
 		m_nbCities = instance.getNbCities();
 		m_cities = new int[m_nbCities + 1];
+		m_positions = new int[m_nbCities];
+		Arrays.fill(m_positions, -1);
+		if (m_nbCities > 0) {
+			m_positions[0] = 0;
+		}
 	}
 
 	/**
@@ -115,6 +141,7 @@ public class Solution{
 	public Solution copy() {
 		Solution copySolution = new Solution(m_instance);
 		copySolution.m_cities = Arrays.copyOf(m_cities, m_nbCities + 1);
+		copySolution.m_positions = Arrays.copyOf(m_positions, m_nbCities);
 		copySolution.m_objectiveValue = m_objectiveValue;
 		return copySolution;
 
@@ -139,19 +166,269 @@ public class Solution{
 		if ((indexCity < 0) || (indexCity >= m_nbCities))
 			throw new Exception("Error Instance.setVertexPosition(i,s) : city value s="
 					+ indexCity + ", must range between 0 and "	+ (m_nbCities - 1));
+		setCityPositionUnchecked(indexCity, position);
+	}
+
+	/**
+	 * Same as {@link #setCityPosition(int, int)} without the range checks.
+	 * 
+	 * @param indexCity index of the city to insert, between 0 and #m_nbCities-1.
+	 * @param position insertion position, between 0 and #m_nbCities.
+	 */
+	public void setCityPositionUnchecked(int indexCity, int position) {
+		if (position < m_nbCities) {
+			int replaced = m_cities[position];
+			if (m_positions[replaced] == position) {
+				m_positions[replaced] = -1;
+			}
+			m_positions[indexCity] = position;
+		}
 		m_cities[position] = indexCity;
 	}
 
+	/**
+	 * Set the whole tour.
+	 * 
+	 * @param cities the tour: #m_nbCities cities, or #m_nbCities+1 cities whose last one is ignored.
+	 *        The route is closed with cities[0].
+	 * @throws Exception returns an error if the array has not a valid size or contains an invalid city number.
+	 */
+	public void setTour(int[] cities) throws Exception {
+		if ((cities.length != m_nbCities) && (cities.length != m_nbCities + 1))
+			throw new Exception("Error Solution.setTour(cities) : the array has size " + cities.length
+					+ ", it should be " + m_nbCities + " or " + (m_nbCities + 1));
+		setTour(cities, 0, m_nbCities);
+	}
+
+	/**
+	 * Set the whole tour from an open tour, starting at a given index: the route is
+	 * tour[first], tour[first+1], ..., tour[length-1], tour[0], ..., tour[first-1], tour[first].
+	 * 
+	 * @param tour an open tour of #m_nbCities cities
+	 * @param first index in tour of the first city of the route
+	 * @throws Exception returns an error if the array has not a valid size, if first is not a valid index
+	 *         or if the array contains an invalid city number.
+	 */
+	public void setTour(int[] tour, int first) throws Exception {
+		if (tour.length < m_nbCities)
+			throw new Exception("Error Solution.setTour(tour,first) : the array has size " + tour.length
+					+ ", it should be at least " + m_nbCities);
+		if ((first < 0) || (first >= Math.max(1, m_nbCities)))
+			throw new Exception("Error Solution.setTour(tour,first) : index first=" + first
+					+ ", must range between 0 and " + (m_nbCities - 1));
+		setTour(tour, first, m_nbCities);
+	}
+
+	/** Copy the open tour tour[0..n-1] rotated to start at tour[first], rebuild the positions and close the route. */
+	private void setTour(int[] tour, int first, int n) throws Exception {
+		if (n == 0) {
+			return;
+		}
+		System.arraycopy(tour, first, m_cities, 0, n - first);
+		System.arraycopy(tour, 0, m_cities, n - first, first);
+		m_cities[n] = m_cities[0];
+		Arrays.fill(m_positions, -1);
+		for (int p = 0; p < n; p++) {
+			int c = m_cities[p];
+			if ((c < 0) || (c >= n))
+				throw new Exception("Error Solution.setTour : city value " + c
+						+ ", must range between 0 and " + (n - 1));
+			m_positions[c] = p;
+		}
+	}
+
+	/**
+	 * Copy the tour in an array.
+	 * 
+	 * @param cities array receiving the cities at positions 0..#m_nbCities-1, and also the closing city
+	 *        at index #m_nbCities if the array is large enough.
+	 * @throws Exception returns an error if the array has less than #m_nbCities elements.
+	 */
+	public void copyTourInto(int[] cities) throws Exception {
+		if (cities.length < m_nbCities)
+			throw new Exception("Error Solution.copyTourInto(cities) : the array has size " + cities.length
+					+ ", it should be at least " + m_nbCities);
+		System.arraycopy(m_cities, 0, cities, 0, Math.min(cities.length, m_nbCities + 1));
+	}
+
+	/** @return the distance between the cities at positions p and q */
+	private long distance(int p, int q) {
+		return m_instance.getDistancesUnchecked(m_cities[p], m_cities[q]);
+	}
+
+	/** @return the buffer used by the moves */
+	private int[] buffer() {
+		if (m_buffer == null) {
+			m_buffer = new int[m_nbCities + 1];
+		}
+		return m_buffer;
+	}
+
+	/** Reverse the cities at positions from..to and update their positions. */
+	private void reverse(int from, int to) {
+		while (from < to) {
+			int c = m_cities[from];
+			m_cities[from] = m_cities[to];
+			m_cities[to] = c;
+			m_positions[m_cities[from]] = from;
+			m_positions[c] = to;
+			from++;
+			to--;
+		}
+	}
+
+	/**
+	 * Apply the 2-opt move removing the edges leaving positions i and j: the cities at
+	 * positions i+1..j are reversed.
+	 * 
+	 * @param i position, 0 <= i < j
+	 * @param j position, i < j <= #m_nbCities-1
+	 * @return the variation of the objective value
+	 * @throws Exception returns an error if the positions are not valid.
+	 */
+	public long apply2OptMove(int i, int j) throws Exception {
+		if ((i < 0) || (j <= i) || (j > m_nbCities - 1))
+			throw new Exception("Error Solution.apply2OptMove(i,j) : positions i=" + i + " and j=" + j
+					+ " should verify 0 <= i < j <= " + (m_nbCities - 1));
+		long delta = distance(i, j) + distance(i + 1, j + 1) - distance(i, i + 1) - distance(j, j + 1);
+		reverse(i + 1, j);
+		m_objectiveValue += delta;
+		return delta;
+	}
+
+	/**
+	 * Apply the move exchanging the cities at positions i and j.
+	 * 
+	 * @param i position, between 1 and #m_nbCities-1
+	 * @param j position, between 1 and #m_nbCities-1
+	 * @return the variation of the objective value
+	 * @throws Exception returns an error if the positions are not valid.
+	 */
+	public long applySwapMove(int i, int j) throws Exception {
+		if ((i < 1) || (i > m_nbCities - 1) || (j < 1) || (j > m_nbCities - 1))
+			throw new Exception("Error Solution.applySwapMove(i,j) : positions i=" + i + " and j=" + j
+					+ " must range between 1 and " + (m_nbCities - 1));
+		if (i == j) {
+			return 0;
+		}
+		if (i > j) {
+			int p = i;
+			i = j;
+			j = p;
+		}
+		// edges leaving positions i-1, i, j-1 and j, the edge i = j-1 being counted once
+		long delta = -distance(i - 1, i) - distance(i, i + 1) - distance(j, j + 1);
+		if (j > i + 1) {
+			delta -= distance(j - 1, j);
+		}
+		int c = m_cities[i];
+		m_cities[i] = m_cities[j];
+		m_cities[j] = c;
+		m_positions[m_cities[i]] = i;
+		m_positions[c] = j;
+		delta += distance(i - 1, i) + distance(i, i + 1) + distance(j, j + 1);
+		if (j > i + 1) {
+			delta += distance(j - 1, j);
+		}
+		m_objectiveValue += delta;
+		return delta;
+	}
+
+	/**
+	 * Apply the Or-opt move removing the segment of length cities starting at position i and
+	 * inserting it between the cities at positions j and j+1, in its original or reversed order.
+	 * 
+	 * @param i position of the first city of the segment, i >= 1 and i+length-1 <= #m_nbCities-1
+	 * @param length length of the segment, at least 1
+	 * @param j insertion position, between 0 and #m_nbCities-1, outside of [i-1, i+length-1]
+	 * @param reversed `true` to insert the segment reversed
+	 * @return the variation of the objective value
+	 * @throws Exception returns an error if the positions are not valid.
+	 */
+	public long applyOrOptMove(int i, int length, int j, boolean reversed) throws Exception {
+		if ((length < 1) || (i < 1) || (i + length - 1 > m_nbCities - 1))
+			throw new Exception("Error Solution.applyOrOptMove(i,length,j,reversed) : segment of length " + length
+					+ " at position " + i + " should be inside positions 1.." + (m_nbCities - 1));
+		if ((j < 0) || (j > m_nbCities - 1) || ((j >= i - 1) && (j <= i + length - 1)))
+			throw new Exception("Error Solution.applyOrOptMove(i,length,j,reversed) : insertion position j=" + j
+					+ " must range between 0 and " + (m_nbCities - 1) + " outside of " + (i - 1) + ".." + (i + length - 1));
+		int last = i + length - 1;
+		long delta = distance(i - 1, last + 1) - distance(i - 1, i) - distance(last, last + 1) - distance(j, j + 1);
+		if (reversed) {
+			delta += distance(j, last) + distance(i, j + 1);
+		} else {
+			delta += distance(j, i) + distance(last, j + 1);
+		}
+
+		int[] segment = buffer();
+		System.arraycopy(m_cities, i, segment, 0, length);
+		int p;
+		if (j < i) {
+			// shift the cities of [j+1, i-1] to the right
+			System.arraycopy(m_cities, j + 1, m_cities, j + 1 + length, i - j - 1);
+			p = j + 1;
+			for (int q = j + 1 + length; q <= last; q++) {
+				m_positions[m_cities[q]] = q;
+			}
+		} else {
+			// shift the cities of [i+length, j] to the left
+			System.arraycopy(m_cities, last + 1, m_cities, i, j - last);
+			p = j - length + 1;
+			for (int q = i; q < p; q++) {
+				m_positions[m_cities[q]] = q;
+			}
+		}
+		for (int q = 0; q < length; q++) {
+			int c = segment[reversed ? length - 1 - q : q];
+			m_cities[p + q] = c;
+			m_positions[c] = p + q;
+		}
+		m_objectiveValue += delta;
+		return delta;
+	}
+
+	/**
+	 * Apply the double-bridge move: the route A B C D, with B the cities at positions i+1..j and
+	 * C the cities at positions j+1..k, becomes A C B D.
+	 * 
+	 * @param i position, 0 <= i < j
+	 * @param j position, i < j < k
+	 * @param k position, j < k <= #m_nbCities-1
+	 * @return the variation of the objective value
+	 * @throws Exception returns an error if the positions are not valid.
+	 */
+	public long applyDoubleBridgeMove(int i, int j, int k) throws Exception {
+		if ((i < 0) || (j <= i) || (k <= j) || (k > m_nbCities - 1))
+			throw new Exception("Error Solution.applyDoubleBridgeMove(i,j,k) : positions i=" + i + ", j=" + j
+					+ " and k=" + k + " should verify 0 <= i < j < k <= " + (m_nbCities - 1));
+		long delta = distance(i, j + 1) + distance(k, i + 1) + distance(j, k + 1)
+				- distance(i, i + 1) - distance(j, j + 1) - distance(k, k + 1);
+		int lengthB = j - i;
+		int lengthC = k - j;
+		int[] buffer = buffer();
+		if (lengthB <= lengthC) {
+			System.arraycopy(m_cities, i + 1, buffer, 0, lengthB);
+			System.arraycopy(m_cities, j + 1, m_cities, i + 1, lengthC);
+			System.arraycopy(buffer, 0, m_cities, i + 1 + lengthC, lengthB);
+		} else {
+			System.arraycopy(m_cities, j + 1, buffer, 0, lengthC);
+			System.arraycopy(m_cities, i + 1, m_cities, i + 1 + lengthC, lengthB);
+			System.arraycopy(buffer, 0, m_cities, i + 1, lengthC);
+		}
+		for (int p = i + 1; p <= k; p++) {
+			m_positions[m_cities[p]] = p;
+		}
+		m_objectiveValue += delta;
+		return delta;
+	}
+
 	/**
 	 * Recomputes the objective value of the solution and return its value.
 	 * 
 	 * @throws Exception
 	 */
 	public double evaluate() throws Exception {
-		m_objectiveValue = 0;
-		for (int i = 0; i < m_nbCities; i++) {
-			m_objectiveValue += m_instance.getDistances(m_cities[i],m_cities[i + 1]);
-		}
+		m_objectiveValue = m_instance.getLength(m_cities, m_nbCities);
 		return m_objectiveValue;
 	}
 
@@ -175,8 +452,8 @@ public class Solution{
 		// Check first that the first and last cities are the same
 		if (m_cities[0] != m_cities[m_nbCities]) {
 			m_error += "Error : The route should start and end with the same city.\n";
-			m_error += "The first city is " + m_cities[0]
-					+ " and the last city is " + m_cities[m_nbCities]
+			m_error += "The first city is " + m_instance.getOriginalIndex(m_cities[0])
+					+ " and the last city is " + m_instance.getOriginalIndex(m_cities[m_nbCities])
 							+ ".\n";
 			result = false;
 		}
@@ -190,7 +467,7 @@ public class Solution{
 		}
 		for (int i = 1; i < m_nbCities; i++) {
 			if (occurences[i] != 1) {
-				m_error += "Error : the city " + (i) + " is visited "
+				m_error += "Error : the city " + m_instance.getOriginalIndex(i) + " is visited "
 						+ occurences[i] + " times.\n";
 				result = false;
 			}
@@ -206,7 +483,10 @@ public class Solution{
 
 	/**
 	 * Print the solution on output `out`. The solution is printed
-	 * using cities numbers and not labels.
+	 * using cities numbers and not labels. When the cities of the instance are
+	 * renumbered, the numbers of the file are printed (see
+	 * {@link Instance#getOriginalIndex(int)}), starting from the city 0 of the
+	 * file.
 	 * 
 	 * For example if you want to print a solution `mysol` on the
 	 * screen, use :
@@ -220,9 +500,16 @@ public class Solution{
 	public void print(PrintStream out) {
 		out.println("#### SOLUTION ####");
 		out.println("objectiveValue \t"+m_objectiveValue);
-		out.print(m_cities[0]);
+		int first = 0;
+		if (m_instance.isRenumbered()) {
+			while (first < m_nbCities - 1 && m_instance.getOriginalIndex(m_cities[first]) != 0) {
+				first++;
+			}
+		}
+		out.print(m_instance.getOriginalIndex(m_cities[first]));
 		for (int i = 1; i <= m_nbCities; i++) {
-			out.print("-" + m_cities[i]);
+			int city = (first == 0) ? m_cities[i] : m_cities[(first + i) % m_nbCities];
+			out.print("-" + m_instance.getOriginalIndex(city));
 		}
 		out.println();
 		out.println("#### END SOLUTION ####");
@@ -269,6 +556,36 @@ public class Solution{
 		return m_cities[position];
 	}
 
+	/**
+	 * Same as {@link #getCity(int)} without the range check.
+	 * @param position the position of the city, between 0 and #m_nbCities
+	 */
+	public int getCityUnchecked(int position) {
+		return m_cities[position];
+	}
+
+	/**
+	 * Returns the position of city in the tour, between 0 and #m_nbCities-1 (the
+	 * closing position #m_nbCities is never returned).
+	 * @param city the index of the city
+	 * @return the position of the city, -1 if the city is not in the solution
+	 * @throws Exception returns an error if city is not a valid city number.
+	 */
+	public int getPosition(int city) throws Exception {
+		if ((city < 0) || (city >= m_nbCities))
+			throw new Exception("Error Solution.getPosition(c) : city value c=" + city
+					+ ", must range between 0 and " + (m_nbCities - 1));
+		return m_positions[city];
+	}
+
+	/**
+	 * Same as {@link #getPosition(int)} without the range check.
+	 * @param city the index of the city, between 0 and #m_nbCities-1
+	 */
+	public int getPositionUnchecked(int city) {
+		return m_positions[city];
+	}
+
 	/**
 	 * @return error code returned by `validate`
 	 */
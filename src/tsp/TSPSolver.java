@@ -3,9 +3,23 @@
  */
 package tsp;
 
-import java.util.ArrayList;
 import java.util.Collections;
 
+import tsp.heuristic.NearestNeighbour;
+import tsp.metaheuristic.ALocalSearch;
+import tsp.metaheuristic.DontLookBitsSearch;
+import tsp.metaheuristic.IslandGeneticAlgorithm;
+import tsp.metaheuristic.IteratedLocalSearch;
+import tsp.metaheuristic.LinKernighan;
+import tsp.metaheuristic.MaxMinAntSystem;
+import tsp.metaheuristic.ParallelMultiStart;
+import tsp.metaheuristic.PartitionCrossover;
+import tsp.metaheuristic.SimulatedAnnealing;
+import tsp.metaheuristic.TabuSearch;
+import tsp.metaheuristic.TabuTable;
+import tsp.metaheuristic.TwoOpt;
+import tsp.tour.ATour;
+
 /**
  * 
  * This class is the place where you should enter your code and from which you can create your own objects.
@@ -38,6 +52,36 @@ public class TSPSolver {
 
 	/** Time given to solve the problem. */
 	private long m_timeLimit;
+
+	/**
+	 * Algorithm used by {@link #solve()}:
+	 * 	- "2opt" : 2-opt descents and random swaps of two cities (default)
+	 * 	- "dlb" : same perturbation, the re-optimisation uses don't-look bits
+	 * 	- "lk" : same perturbation, the re-optimisation uses Lin-Kernighan
+	 * 	- "ils" : iterated Lin-Kernighan with double-bridge kicks (see {@link IteratedLocalSearch})
+	 * 	- "mmas" : MAX-MIN Ant System, each ant being improved by 2-opt/Or-opt (see {@link MaxMinAntSystem})
+	 * 	- "sa" : simulated annealing on 2-opt and Or-opt moves (see {@link SimulatedAnnealing})
+	 * 	- "tabu" : iterated tabu search on 2-opt moves (see {@link TabuSearch})
+	 * 	- "ga" : island genetic algorithm, order crossover and 2-opt/Or-opt repair (see {@link IslandGeneticAlgorithm})
+	 */
+	private String m_method;
+
+	/** Acceptance criterion of the "ils" algorithm: "better", "equal" (default) or "restart". */
+	private String m_acceptance;
+
+	/**
+	 * Number of threads used by {@link #solve()}. Only "2opt", "dlb" and "lk" (parallel
+	 * chains, see {@link ParallelMultiStart}), "mmas" (the ants of an iteration are built
+	 * in parallel) and "ga" (each island is evolved by a thread) use several threads:
+	 * "ils", "sa" and "tabu" run a single chain and reject more than one thread.
+	 */
+	private int m_nbThreads;
+
+	/** `true` if the statistics of the algorithm are printed on the error output (option -v). */
+	private boolean m_verbose;
+
+	/** Heuristique du plus proche voisin utilisée par {@link #initialisation()}. */
+	private NearestNeighbour m_plusProcheVoisin;
 	
 
 	
@@ -54,6 +98,10 @@ public class TSPSolver {
 		m_instance = instance;
 		m_solution = new Solution(m_instance);
 		m_timeLimit = timeLimit;
+		m_method = "2opt";
+		m_nbThreads = 1;
+		m_acceptance = "equal";
+		m_verbose = false;
 	}
 
 	// -----------------------------
@@ -65,90 +113,19 @@ public class TSPSolver {
 	
 	
 	/**
-	 * Méthode permettant de renverser la parcours allant de l'indice i à j dans une ArrayList 
-	 * Exemple : sur le parcours [2,3,1,4],  RenverseParcours (1,3,parcours) retourne [2,4,1,3].
-	 *
-	 * @param i indice de début
-	 * @param j indice de fin
-	 * @param parcours le parcours sur lequel on souhaite faire un renversement
-	 * @return ArrayList obtenue après renversement du parcours
-	 */
-	public ArrayList<Integer> RenverseParcours (int i, int j, ArrayList<Integer> parcours) { // Renverse le parcours allant de i à j dans la liste parcours en supposant i>j 
-		ArrayList<Integer> renverse = new ArrayList<Integer>();
-		ArrayList<Integer> tampon = new ArrayList<Integer>();
-		
-		for(int k = 0; k < j-i+1; k++) {
-			renverse.add(parcours.get(j-k));
-		}
-		
-		for(int k = 0; k < i; k++) {
-			tampon.add(parcours.get(k));
-		}
-		
-		tampon.addAll(renverse);
-		
-		for(int k = j+1; k < parcours.size(); k++) {
-			tampon.add(parcours.get(k));
-		}
-		
-		parcours = tampon;
-		return parcours;
-	}
-	
-	/**
-	 * Méthode retourant le gain réalisé sur la distance entre la ville à l'indice i et la ville à 
-	 * l'indice j, c'est-à-dire la différence de coût entre la solution initiale et la solution où 
-	 * une partie du parcours est renversée (sans croisement).
-	 *
-	 * @param ameliorationTrajet Nouveau chemin sur lequel on souhaite calculer le gain
-	 * @param i indice de début
-	 * @param j indice de fin
-	 * @return double gain, le gain (algébrique) obtenu en comparant le trajet initial et le trajet 
-	 * où une partie est renversée.
-	 * @throws Exception the exception
-	 */
-	public double gain(ArrayList<Integer> ameliorationTrajet,int i,int j) throws Exception {
-		int N = ameliorationTrajet.size();
-		double gain = 0;
-		if (i < j) {
-			gain = this.m_instance.getDistances(ameliorationTrajet.get(i),ameliorationTrajet.get((j+N+1)%N))
-					+this.m_instance.getDistances(ameliorationTrajet.get((i+N-1)%N),ameliorationTrajet.get(j))
-					-this.m_instance.getDistances(ameliorationTrajet.get((i+N-1)%N),ameliorationTrajet.get(i))
-					-this.m_instance.getDistances(ameliorationTrajet.get(j),ameliorationTrajet.get((j+N+1)%N));
-		} else {
-			gain = this.m_instance.getDistances(ameliorationTrajet.get((i+N-1)%N),ameliorationTrajet.get(j))
-					-this.m_instance.getDistances((i+N-1)%N,ameliorationTrajet.get(i));
-		}
-		return gain;
-	}
-	
-	/**
-	 * Retourne un trajet obtenu à partir de l'algorithme du plus proche voisin 
+	 * Retourne un trajet obtenu à partir de l'algorithme du plus proche voisin, partant de
+	 * la ville 0. La ville la plus proche non visitée est cherchée dans les listes de
+	 * candidats puis dans un k-d tree (voir {@link NearestNeighbour}), construit au premier
+	 * appel et réutilisé par les suivants.
 	 *
-	 * @return ArrayList L'ArrayList solution du TSP obtenue avec l'algorithme du plus proche voisin 
+	 * @return le trajet ouvert (la ville de retour n'est pas stockée)
 	 * @throws Exception 
 	 */
-	public ArrayList<Integer> initialisation() throws Exception {
-		int m = this.getInstance().getNbCities();
-		int a = 0;
-		long distanceMin = Long.MAX_VALUE;
-		int ville = 0;
-		ArrayList<Integer> listeVilles = new ArrayList<Integer>();
-		listeVilles.add(0, 0);
-		for (int k = 1; k < m; k++) {
-			a = listeVilles.get(k-1);
-			distanceMin = Long.MAX_VALUE;
-			ville = 0;
-			for (int i = 0; i < m; i++) {
-				if ((!listeVilles.contains(i)) && this.getInstance().getDistances(a, i) < distanceMin) {
-					distanceMin = this.getInstance().getDistances(a, i);
-					ville = i;
-				}
-			}
-			listeVilles.add(ville);
+	public int[] initialisation() throws Exception {
+		if (m_plusProcheVoisin == null) {
+			m_plusProcheVoisin = new NearestNeighbour(this.m_instance);
 		}
-		listeVilles.add(0);
-		return listeVilles;
+		return m_plusProcheVoisin.buildTour(0);
 	} 
 	
 	
@@ -172,23 +149,74 @@ public class TSPSolver {
 	 * @throws Exception may return some error, in particular if some vertices index are wrong.
 	 */
 	public void solve() throws Exception {	
+		switch (m_method) {
+		case "2opt": case "dlb": case "lk": case "ils": case "mmas": case "sa": case "tabu": case "ga":
+			break;
+		default:
+			throw new Exception("Error TSPSolver : unknown algorithm " + m_method
+					+ ", it should be 2opt, dlb, lk, ils, mmas, sa, tabu or ga");
+		}
+		switch (m_method) {
+		case "ils": case "sa": case "tabu":
+			if (m_nbThreads > 1) {
+				throw new Exception("Error TSPSolver : the algorithm " + m_method + " uses a single thread, "
+						+ m_nbThreads + " threads were requested (only 2opt, dlb, lk, mmas and ga use several threads)");
+			}
+			break;
+		default:
+			break;
+		}
 		m_solution.print(System.err);
+		if (m_method.equals("ils")) {
+			this.solveILS();
+			return;
+		}
+		if (m_method.equals("mmas")) {
+			this.solveFourmis();
+			return;
+		}
+		if (m_method.equals("sa")) {
+			this.solveRecuit();
+			return;
+		}
+		if (m_method.equals("tabu")) {
+			this.solveTabou();
+			return;
+		}
+		if (m_method.equals("ga")) {
+			this.solveGenetique();
+			return;
+		}
+		if (m_nbThreads > 1) {
+			this.solveParallele();
+			return;
+		}
+		if (m_method.equals("dlb")) {
+			this.solveRechercheLocale(new DontLookBitsSearch(this.m_instance));
+			return;
+		}
+		if (m_method.equals("lk")) {
+			this.solveRechercheLocale(new LinKernighan(this.m_instance));
+			return;
+		}
 		long startTime = System.currentTimeMillis();
 		long spentTime = 0;
 		int N = this.m_instance.getNbCities();
-		ArrayList<Integer> trajetInitial = this.initialisation();
-		ArrayList<Integer> ameliorationTrajet = new ArrayList<Integer>();
-		ArrayList<Integer> meilleurTrajet = new ArrayList<Integer>();
-		ArrayList<ArrayList<Integer>> permutationsEffectuees = new ArrayList<ArrayList<Integer>>();
-
-		for (int k=0;k<N+1;k++) {
-			ameliorationTrajet.add(trajetInitial.get(k));
-			meilleurTrajet.add(trajetInitial.get(k));
-		}
+		TwoOpt deuxOpt = new TwoOpt(this.m_instance);
+		int[] ameliorationTrajet = new int[N];
+		int[] meilleurTrajet = new int[N];
+		int[] meilleurTrajetGlobal = new int[N];
+		// fusion des minima locaux des redémarrages avec la meilleure solution
+		PartitionCrossover fusion = new PartitionCrossover(this.m_instance);
+		// échanges déjà essayés depuis la dernière amélioration (tabous jusqu'au prochain clear())
+		TabuTable permutationsEffectuees = new TabuTable(1000);
+
+		System.arraycopy(this.initialisation(), 0, ameliorationTrajet, 0, N);
 		
-		double meilleureDistance = Double.MAX_VALUE;
-		double distanceAvant = Double.MAX_VALUE;
-		double distanceApres = Double.MAX_VALUE;
+		long meilleureDistanceGlobale = Long.MAX_VALUE;
+		long meilleureDistance = Long.MAX_VALUE;
+		long distanceApres = Long.MAX_VALUE;
+		long distanceCourante = deuxOpt.tourLength(ameliorationTrajet);
 		int nombreTirageAuSort = 0;
 		int indexVilleAlea1 = 1 ;
 		int indexVilleAlea2 = 1 ;
@@ -196,236 +224,360 @@ public class TSPSolver {
 		
 		do
 		{
-			
-		distanceAvant = distanceApres;
-
-		for (int i=1;i<N+1;i++) {  
-			for (int j=i+1;j<N+1;j++) {
-				if (this.gain(ameliorationTrajet,i,j)<0.0) {   
-					/* Si le gain est négatif, renverser l'ordre entre la ville i et j permet de
-					 * deminuer la distance totale.
-					 */
-					ameliorationTrajet=this.RenverseParcours(i,j,ameliorationTrajet); 
-				}
-			}
-		}
 		
-		distanceApres = 0.0;
-		for (int i = 0; i < ameliorationTrajet.size()-1; i++) { // On calcule la distance après 
-																//les appels à RenverseParcours.
-			distanceApres += this.m_instance.getDistances(ameliorationTrajet.get(i), ameliorationTrajet.get(i+1));
-		}
+		/* Les mouvements 2-opt sont appliqués directement sur le tableau ameliorationTrajet
+		 * (renversement en place) jusqu'à atteindre un minimum local. La distance est mise à
+		 * jour avec le gain de chaque mouvement, sans recalcul complet : distanceCourante est
+		 * toujours la longueur de ameliorationTrajet.
+		 */
+		distanceApres = distanceCourante + deuxOpt.optimize(ameliorationTrajet);
 		
 		if (distanceApres < meilleureDistance) { // Si la distance calculée est inférieure à la meilleure
-			meilleurTrajet.clear();				 // distance, on la stocke et on met à jour la solution.
-			permutationsEffectuees.clear();
+			permutationsEffectuees.clear();		 // distance, on la stocke.
 			meilleureDistance = distanceApres;
-			for (int i = 0; i < ameliorationTrajet.size(); i++) {
-				this.getSolution().setCityPosition(ameliorationTrajet.get(i),i);
-				meilleurTrajet.add(ameliorationTrajet.get(i));
+			System.arraycopy(ameliorationTrajet, 0, meilleurTrajet, 0, N);
+			
+			if (meilleureDistance < meilleureDistanceGlobale) { // Mise à jour de la solution
+				meilleureDistanceGlobale = meilleureDistance;
+				System.arraycopy(meilleurTrajet, 0, meilleurTrajetGlobal, 0, N);
+				TwoOpt.writeBack(meilleurTrajet, this.getSolution());
+				this.getSolution().setObjectiveValue(meilleureDistanceGlobale);
 			}
 		}
-		/* Si la distance totale avant les appels à RenverseParcours est inférieure ou égale
-		 * à la distance totale après, c'est qu'il n'y a pas eu d'amélioration et il n'y en aura plus
-		 * pour cette liste là car un minimum local a été atteint.
-		 * 
-		 * Le but est alors d'inverser aléatoirement des couples de villes dans la liste représentant
-		 * notre meilleure solution, et de réappliquer RenverseParcours. Tant qu'on ne trouve pas de 
-		 * meilleure solution après inversion de 2 villes, on choisit un autre couple à inverser. 
+		/* Un minimum local a été atteint. Le but est alors d'inverser aléatoirement des couples
+		 * de villes dans la meilleure solution, et de réappliquer les mouvements 2-opt. Tant 
+		 * qu'on ne trouve pas de meilleure solution après inversion de 2 villes, on choisit un
+		 * autre couple à inverser. 
 		 * 
 		 * De plus, si l'inversion ne permet pas d'amélioration, on repart de la meilleure solution
-		 * pour inverser un autre couple, et non pas de la liste telle qu'elle est après la précédente
+		 * pour inverser un autre couple, et non pas du tableau tel qu'il est après la précédente
 		 * inversion.
 		 */
-		if (distanceAvant <= distanceApres) {
-			ameliorationTrajet.clear();
-			for (int i = 0; i < meilleurTrajet.size(); i++) {
-				ameliorationTrajet.add(meilleurTrajet.get(i));
-			}
-			ArrayList<Integer> couple1 = new ArrayList<Integer>();
-			ArrayList<Integer> couple2 = new ArrayList<Integer>();
+		System.arraycopy(meilleurTrajet, 0, ameliorationTrajet, 0, N);
+		indexVilleAlea1 = 1 + (int) (Math.random()*(N-1));
+		indexVilleAlea2 = 1 + (int) (Math.random()*(N-1));
+		nombreTirageAuSort = 0;
+		
+		/* Les couples (i,j) et (j,i) représentent la même inversion, la table les confond.
+		 * Si cette inversion n'a jamais été effectuée, alors on l'effectue et on la stocke
+		 * dans la table. Sinon, on cherche un nouveau couple par au plus 1000 tirages au sort.
+		 * 
+		 * La table est un hachage à adressage ouvert : le test et l'ajout coûtent O(1) au lieu
+		 * d'un parcours de toutes les inversions déjà effectuées.
+		 */
+		
+		while ((indexVilleAlea1 == indexVilleAlea2 || permutationsEffectuees.contains(indexVilleAlea1, indexVilleAlea2, 0)) 
+				 && nombreTirageAuSort < 1000) {
 			indexVilleAlea1 = 1 + (int) (Math.random()*(N-1));
 			indexVilleAlea2 = 1 + (int) (Math.random()*(N-1));
-			couple1.add(indexVilleAlea1);
-			couple1.add(indexVilleAlea2);
-			couple2.add(indexVilleAlea2);
-			couple2.add(indexVilleAlea1);
-			nombreTirageAuSort = 0;
+			nombreTirageAuSort ++;
+		}
+		
+		// Cas où l'on a trouvé une inversion faisable par tirage au sort d'un couple:
+		
+		if (nombreTirageAuSort < 1000 ) {
+			permutationsEffectuees.add(indexVilleAlea1, indexVilleAlea2, TabuTable.FOREVER, 0);
+			distanceCourante = meilleureDistance + this.echange(ameliorationTrajet, indexVilleAlea1, indexVilleAlea2);
+			
+		/*Si jamais toutes les inversions possibles ont été effectuées (petites instances) ou
+		* si le tirage aléatoire ne parvient pas à trouver un nouveau couple en moins de 1000
+		* tirages (une grande majorité de couples ayant déjà été trouvés), on décide de recommencer
+		* en partant d'une nouvelle solution aléatoire (la meilleure solution trouvée reste
+		* stockée dans m_solution tant que l'on n'a pas trouvé mieux).
+		* 
+		* Le nombre de couples possibles à inverser étant de l'ordre de factoriel n, la limite de
+		* 1000 tirages au sort sans trouver de nouveau couples n'est atteinte que pour les petites 
+		* instances, où un minimum local sera plus vite atteint (le nombre de tirage au sort est
+		* remis à 0 après avoir trouvé un nouveau couple).
+		* 
+		* Le nombre de 1000 a été choisi après plusieurs tests, de manière à laisser le temps aux
+		* petites instances (moins de 150 villes) de trouver de nouveaux couples, sans que cette
+		* tâche n'handicape trop la complexité temporelle.
+		*/
 			
-			/* couple1 et couple2 représente la même inversion. Si cette inversion n'a jamais été
-			 * effectuée, alors on l'effectue et on la stock dans une liste. Sinon, on cherche
-			 * un nouveau couple par au plus 1000 tirages au sort.
-			 * 
-			 * Le test contains n'est effectué que sur le couple1, car si la liste contient couple2, 
-			 * alors elle contient aussi couple1 et inversement.
+		} else {
+			
+			/* Avant de repartir, le minimum local de la chaîne est fusionné avec la meilleure
+			 * solution par croisement de partition : là où les deux trajets diffèrent, chaque
+			 * composante garde le plus court des deux chemins. La fusion, réoptimisée par 2-opt,
+			 * remplace la meilleure solution si elle est plus courte.
 			 */
+			long distanceFusion = fusion.merge(meilleurTrajetGlobal, meilleurTrajet, ameliorationTrajet);
+			if (distanceFusion < meilleureDistanceGlobale) {
+				meilleureDistanceGlobale = distanceFusion + deuxOpt.optimize(ameliorationTrajet);
+				System.arraycopy(ameliorationTrajet, 0, meilleurTrajetGlobal, 0, N);
+				TwoOpt.writeBack(meilleurTrajetGlobal, this.getSolution());
+				this.getSolution().setObjectiveValue(meilleureDistanceGlobale);
+			}
 			
-			while ((indexVilleAlea1 == indexVilleAlea2 || permutationsEffectuees.contains(couple1)) 
-					 && nombreTirageAuSort < 1000) {
-				couple1.clear();
-				couple2.clear();
+			meilleureDistance = Long.MAX_VALUE;
+			permutationsEffectuees.clear();
+			System.arraycopy(this.initialisation(), 0, ameliorationTrajet, 0, N);
+			nombreTirageAuSort = 0;
+			while (nombreTirageAuSort<100000) {
 				indexVilleAlea1 = 1 + (int) (Math.random()*(N-1));
 				indexVilleAlea2 = 1 + (int) (Math.random()*(N-1));
-				couple1.add(indexVilleAlea1);
-				couple1.add(indexVilleAlea2);
-				couple2.add(indexVilleAlea2);
-				couple2.add(indexVilleAlea1);
+				villeAlea1 = ameliorationTrajet[indexVilleAlea1]; 
+				ameliorationTrajet[indexVilleAlea1] = ameliorationTrajet[indexVilleAlea2];
+				ameliorationTrajet[indexVilleAlea2] = villeAlea1;
 				nombreTirageAuSort ++;
 			}
-			
-			// Cas où l'on a trouvé une inversion faisable par tirage au sort d'un couple:
-			
-			if (nombreTirageAuSort < 1000 ) {
-				permutationsEffectuees.add(couple1);
-				permutationsEffectuees.add(couple2);
-				villeAlea1 = ameliorationTrajet.get(indexVilleAlea1); 
-				ameliorationTrajet.set(indexVilleAlea1,ameliorationTrajet.get(indexVilleAlea2));
-				ameliorationTrajet.set(indexVilleAlea2,villeAlea1);
-				
-			/*Si jamais toutes les inversions possibles ont été effectuées (petites instances) ou
-			* si le tirage aléatoire ne parvient pas à trouver un nouveau couple en moins de 1000
-			* tirages (une grande majorité de couples ayant déjà été trouvés), on décide de recommencer
-			* en partant d'une nouvelle solution aléatoire (on conserve quand même la
-			* solution trouvée avant la réinitialisation tant que l'on n'a pas trouvé mieux).
-			* 
-			* Le nombre de couples possibles à inverser étant de l'ordre de factoriel n, la limite de
-			* 1000 tirages au sort sans trouver de nouveau couples n'est atteinte que pour les petites 
-			* instances, où un minimum local sera plus vite atteint (le nombre de tirage au sort est
-			* remis à 0 après avoir trouvé un nouveau couple).
-			* 
-			* Le nombre de 1000 a été choisi après plusieurs tests, de manière à laisser le temps aux
-			* petites instances (moins de 150 villes) de trouver de nouveaux couples, sans que cette
-			* tâche n'handicape trop la complexité temporelle.
-			*/
-				
-			} else {
-				
-				distanceApres = Double.MAX_VALUE;
-				permutationsEffectuees.clear();
-				trajetInitial = this.initialisation();
-				nombreTirageAuSort = 0;
-				while (nombreTirageAuSort<100000) {
-					indexVilleAlea1 = 1 + (int) (Math.random()*(N-1));
-					indexVilleAlea2 = 1 + (int) (Math.random()*(N-1));
-					villeAlea1 = trajetInitial.get(indexVilleAlea1); 
-					trajetInitial.set(indexVilleAlea1,trajetInitial.get(indexVilleAlea2));
-					trajetInitial.set(indexVilleAlea2,villeAlea1);
-					nombreTirageAuSort ++;
-				}
-				ameliorationTrajet.clear();
-				meilleurTrajet.clear();
-				for (int k=0;k<N+1;k++) {
-					ameliorationTrajet.add(trajetInitial.get(k));
-					meilleurTrajet.add(trajetInitial.get(k));
-				}
-			}
+			distanceCourante = deuxOpt.tourLength(ameliorationTrajet);
 		}
 		spentTime=System.currentTimeMillis()-startTime;	
 		} while(spentTime < (m_timeLimit * 1000 - 500) );
 		
-	/* Code du solve() pour l'algorithme des fourmis :
-	    m_solution.print(System.err);
+	}
+
+	
+
+	/**
+	 * Variante de solve() par recherche locale itérée : au lieu d'échanger deux villes ou de
+	 * repartir d'une solution aléatoire, on applique un double-bridge dans une fenêtre de
+	 * quelques dizaines de villes et seules ses extrémités sont réoptimisées par Lin-Kernighan.
+	 * Le critère d'acceptation est donné par m_acceptance.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveILS() throws Exception {
 		long startTime = System.currentTimeMillis();
-		long spentTime = 0;
+		IteratedLocalSearch ils = new IteratedLocalSearch(this.m_instance, new LinKernighan(this.m_instance));
+		ils.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		if (m_acceptance.equals("better")) {
+			ils.setAcceptance(IteratedLocalSearch.Acceptance.BETTER);
+		} else if (m_acceptance.equals("restart")) {
+			ils.setAcceptance(IteratedLocalSearch.Acceptance.RESTART);
+		} else if (m_acceptance.equals("equal")) {
+			ils.setAcceptance(IteratedLocalSearch.Acceptance.BETTER_OR_EQUAL);
+		} else {
+			throw new Exception("Error TSPSolver : unknown acceptance criterion " + m_acceptance
+					+ ", it should be better, equal or restart");
+		}
 		
-		int N=this.m_instance.getNbCities(); // nombre de villes
-		int m=N; //nombre de fourmis
-		ArrayList<ArrayList<Integer>> visiteIterAvant = new ArrayList<ArrayList<Integer>>(); 
-		for (int f = 0; f < m; f++) {
-			visiteIterAvant.add(this.initialisation());
+		this.getSolution().setTour(this.initialisation());
+		ils.solve(this.getSolution());
+		if (m_verbose) {
+			System.err.println(ils.getNbKicks() + " kicks");
 		}
-		ArrayList<Integer> meilleureSolution = this.initialisation();
-		double meilleureDistance = 0.0;
-		for (int i = 0; i<this.initialisation().size()-1; i++) {
-			this.getSolution().setCityPosition(meilleureSolution.get(i), i);
-			meilleureDistance += this.m_instance.getDistances(meilleureSolution.get(i), meilleureSolution.get(i+1));
+	}
+
+	/**
+	 * Variante de solve() par colonie de fourmis (MAX-MIN Ant System) : les fourmis
+	 * construisent leurs trajets sur les listes de candidats, guidées par les phéromones
+	 * déposées par la meilleure fourmi, et chaque trajet est amélioré par 2-opt/Or-opt avec
+	 * don't-look bits. Les fourmis d'une itération sont construites par m_nbThreads threads.
+	 * La meilleure solution part du plus proche voisin.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveFourmis() throws Exception {
+		long startTime = System.currentTimeMillis();
+		MaxMinAntSystem fourmis = new MaxMinAntSystem(this.m_instance, DontLookBitsSearch::new, m_nbThreads);
+		fourmis.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		this.getSolution().setTour(this.initialisation());
+		fourmis.solve(this.getSolution());
+		if (m_verbose) {
+			System.err.println(fourmis.getNbIterations() + " iterations");
 		}
-		this.getSolution().setCityPosition(meilleureSolution.get(0), meilleureSolution.size()-1);
-		ArrayList<ArrayList<Integer>> visiteIterNow = new ArrayList<ArrayList<Integer>>();
-		for (int i = 0; i < m; i++) {
-			visiteIterNow.add(new ArrayList<Integer>());
+	}
+
+	/**
+	 * Variante de solve() par recuit simulé : des mouvements 2-opt et Or-opt tirés dans les
+	 * listes de candidats sont acceptés selon la température, qui décroît avec le temps écoulé
+	 * jusqu'à la limite de temps. La meilleure solution est enfin améliorée par 2-opt/Or-opt
+	 * avec don't-look bits.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveRecuit() throws Exception {
+		long startTime = System.currentTimeMillis();
+		DontLookBitsSearch rechercheLocale = new DontLookBitsSearch(this.m_instance);
+		// la recherche locale finale s'arrête à la limite de temps, dont elle se réserve la fin
+		rechercheLocale.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		SimulatedAnnealing recuit = new SimulatedAnnealing(this.m_instance, rechercheLocale);
+		recuit.setDeadline(startTime + m_timeLimit * 1000 - 1000);
+		this.getSolution().setTour(this.initialisation());
+		recuit.solve(this.getSolution());
+		if (m_verbose) {
+			System.err.println(recuit.getNbMoves() + " moves, " + recuit.getNbAccepted() + " accepted");
 		}
-		double[][] visiFinale = this.visibilite();
-		int nombreIteration = 0;
-		ArrayList<ArrayList<Integer>> avisiter=new ArrayList<ArrayList<Integer>>();
-		int depart = 0;
-		double[] proba = new double[N];
-		double maxi = 0.0;
-		int w = 0;
-		int indexTrajetMin = 0;
-		double longueurTrajet = 0;
-		do
-		{
-		spentTime = System.currentTimeMillis() - startTime;
-		
-		for (int i=0;i<N;i++) {
-			avisiter.add(new ArrayList<Integer>());
-			
-			for (int j=0; j<N; j++) {
-				avisiter.get(i).add(j);
-			}
+	}
+
+	/**
+	 * Variante de solve() par recherche tabou : partant de l'optimum local de la recherche
+	 * 2-opt/Or-opt avec don't-look bits, le meilleur mouvement 2-opt des listes de candidats
+	 * est appliqué à chaque itération, même s'il dégrade le trajet ; les arêtes qu'il supprime
+	 * ne peuvent plus être ajoutées, ni celles qu'il ajoute supprimées, pendant quelques
+	 * itérations. Après quelques itérations sans amélioration, la recherche locale réoptimise
+	 * les villes déplacées, puis la recherche repart du meilleur trajet, perturbé par
+	 * l'échange de deux villes.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveTabou() throws Exception {
+		long startTime = System.currentTimeMillis();
+		DontLookBitsSearch rechercheLocale = new DontLookBitsSearch(this.m_instance);
+		rechercheLocale.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		TabuSearch tabou = new TabuSearch(this.m_instance, rechercheLocale);
+		tabou.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		this.getSolution().setTour(this.initialisation());
+		tabou.solve(this.getSolution());
+		if (m_verbose) {
+			System.err.println(tabou.getNbIterations() + " iterations, " + tabou.getNbRestarts() + " restarts");
 		}
-		
-		while (avisiter.get(N-1).size() != 0) {
-			for (int k=0;k<m;k++) { 
-				visiteIterNow.get(k).add(k);
-				depart = k;
-				for (int h=0; h<N; h++) {
-					proba=this.probaDeVisite(k, depart, visiteIterAvant, avisiter, visiFinale);
-					maxi = 0.0;
-					w = 0;
-					for (int n=0; n<proba.length; n++) {
-						if (proba[n]>maxi) {
-							w=n;
-							maxi=proba[n];
-						}
-					}
-					
-					depart = w;
-					visiteIterNow.get(k).add(depart);
-					avisiter.get(k).remove((Object) depart);
-				}
-			}
+	}
+
+	/**
+	 * Variante de solve() par algorithme génétique en îles : chacun des m_nbThreads threads
+	 * fait évoluer sa population par croisement d'ordre (OX), réparation 2-opt/Or-opt avec
+	 * don't-look bits puis fusion avec le meilleur parent (croisement de partition), et
+	 * envoie régulièrement son meilleur trajet à l'île suivante. La population de la première
+	 * île contient le plus proche voisin.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveGenetique() throws Exception {
+		long startTime = System.currentTimeMillis();
+		IslandGeneticAlgorithm genetique = new IslandGeneticAlgorithm(this.m_instance, DontLookBitsSearch::new, m_nbThreads);
+		genetique.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		this.getSolution().setTour(this.initialisation());
+		genetique.solve(this.getSolution());
+		if (m_verbose) {
+			System.err.println(genetique.getNbChildren() + " children");
 		}
-		
-		for (int i = 0; i < visiteIterNow.size(); i++) {
-			visiteIterAvant.get(i).clear();
-			
-			for (int j = 0; j < visiteIterNow.get(i).size(); j++) {
-				visiteIterAvant.get(i).add(visiteIterNow.get(i).get(j));
-			}
+	}
+
+	/**
+	 * Variante parallèle de solve() : m_nbThreads chaînes de perturbations indépendantes
+	 * (échanges de deux villes et redémarrages aléatoires) partagent la meilleure solution
+	 * trouvée, écrite dans m_solution avant la limite de temps.
+	 * 
+	 * La recherche locale est celle de m_method ; pour "2opt", il s'agit du 2-opt avec
+	 * don't-look bits, sans Or-opt.
+	 *
+	 * @throws Exception the exception
+	 */
+	private void solveParallele() throws Exception {
+		long startTime = System.currentTimeMillis();
+		ParallelMultiStart.LocalSearchFactory recherche;
+		if (m_method.equals("lk")) {
+			recherche = LinKernighan::new;
+		} else if (m_method.equals("dlb")) {
+			recherche = DontLookBitsSearch::new;
+		} else {
+			recherche = instance -> {
+				DontLookBitsSearch deuxOpt = new DontLookBitsSearch(instance);
+				deuxOpt.setOrOpt(false);
+				return deuxOpt;
+			};
 		}
+		ParallelMultiStart multiStart = new ParallelMultiStart(this.m_instance, recherche, m_nbThreads);
+		multiStart.setDeadline(startTime + m_timeLimit * 1000 - 500);
 		
-		for (int k=0; k<visiteIterNow.size(); k++) {
-			visiteIterNow.get(k).clear();
-		}
+		// La première chaîne part du plus proche voisin
+		this.getSolution().setTour(this.initialisation());
+		multiStart.solve(this.getSolution());
+	}
+
+	/**
+	 * Variante de solve() utilisant une recherche locale avec don't-look bits (2-opt/Or-opt
+	 * ou Lin-Kernighan).
+	 * 
+	 * La perturbation est la même (échange de deux villes de la meilleure solution), mais
+	 * seules les villes dont les arêtes ont été modifiées par l'échange sont réexaminées :
+	 * la réoptimisation coûte un temps proportionnel à la taille de la perturbation au lieu
+	 * d'un parcours complet des couples (i,j).
+	 *
+	 * @param rechercheLocale la recherche locale utilisée
+	 * @throws Exception the exception
+	 */
+	private void solveRechercheLocale(ALocalSearch rechercheLocale) throws Exception {
+		long startTime = System.currentTimeMillis();
+		long spentTime = 0;
+		rechercheLocale.setDeadline(startTime + m_timeLimit * 1000 - 500);
+		int N = this.m_instance.getNbCities();
+		ATour tour = ATour.create(N);
+		int[] meilleurTrajet = new int[N];
 		
-		indexTrajetMin = 0;
+		System.arraycopy(this.initialisation(), 0, meilleurTrajet, 0, N);
+		tour.setTour(meilleurTrajet);
+		rechercheLocale.activateAll(tour);
+		long meilleureDistance = rechercheLocale.length(tour) + rechercheLocale.optimize(tour);
+		tour.toArray(meilleurTrajet);
+		TwoOpt.writeBack(meilleurTrajet, this.getSolution());
+		this.getSolution().setObjectiveValue(meilleureDistance);
 		
-		for (ArrayList<Integer> parcours : visiteIterAvant) {
-			if (parcours.get(0)==parcours.get(parcours.size()-1)) {
-				longueurTrajet = 0;
-				for (int i = 0; i < N; i++) {
-					longueurTrajet += this.m_instance.getDistances(parcours.get(i), parcours.get(i+1));
-				}
+		if (N < 4) {
+			return;
+		}
+		/* La meilleure solution reste dans tour : l'échange et la réoptimisation sont notés
+		 * dans le journal du trajet et annulés s'ils ne l'améliorent pas, sans recopier le
+		 * trajet entier à chaque essai.
+		 */
+		tour.startJournal();
+		do
+		{
+			// Échange de deux villes de la meilleure solution ; seules ces villes et leurs
+			// voisines sont réexaminées
+			int ville1 = (int) (Math.random()*N);
+			int ville2 = (int) (Math.random()*N);
+			if (ville1 == ville2) {
+				continue;
+			}
+			long distance = meilleureDistance + rechercheLocale.swapCities(tour, ville1, ville2);
+			distance += rechercheLocale.optimize(tour);
 			
-				if (longueurTrajet<meilleureDistance) {
-					meilleureDistance=longueurTrajet;
-					indexTrajetMin = visiteIterAvant.indexOf(parcours);
-					
-					for (int i=0; i<N+1; i++) {
-						this.getSolution().setCityPosition(visiteIterAvant.get(indexTrajetMin).get(i), i);
-					}	
+			if (distance <= meilleureDistance) {
+				tour.commit();
+				if (distance < meilleureDistance) {
+					meilleureDistance = distance;
+					tour.toArray(meilleurTrajet);
+					TwoOpt.writeBack(meilleurTrajet, this.getSolution());
+					this.getSolution().setObjectiveValue(meilleureDistance);
 				}
+			} else {
+				tour.rollback();
 			}
-		}
-		nombreIteration++;		
-	}	while(spentTime < (m_timeLimit * 1000 - 100) );
-		System.out.println(nombreIteration);
-	 */
+			spentTime=System.currentTimeMillis()-startTime;	
+		} while(spentTime < (m_timeLimit * 1000 - 500) );
+		tour.stopJournal();
 	}
-
 	
+	/**
+	 * Échange les villes aux indices i et j du trajet et retourne la variation de la distance
+	 * totale, calculée sur les seules arêtes modifiées.
+	 *
+	 * @param trajet trajet ouvert (la ville de retour n'est pas stockée)
+	 * @param i premier indice
+	 * @param j second indice
+	 * @return la variation de la distance totale
+	 */
+	public long echange(int[] trajet, int i, int j) {
+		int N = trajet.length;
+		// arêtes (trajet[k], trajet[k+1]) touchées par l'échange, sans doublon
+		int[] aretes = {(i+N-1)%N, i, (j+N-1)%N, j};
+		int nombreAretes = 0;
+		for (int a = 0; a < 4; a++) {
+			boolean doublon = false;
+			for (int b = 0; b < nombreAretes; b++) {
+				doublon |= (aretes[b] == aretes[a]);
+			}
+			if (!doublon) {
+				aretes[nombreAretes++] = aretes[a];
+			}
+		}
+		long variation = 0;
+		for (int a = 0; a < nombreAretes; a++) {
+			variation -= this.m_instance.getDistancesUnchecked(trajet[aretes[a]], trajet[(aretes[a]+1)%N]);
+		}
+		int ville = trajet[i];
+		trajet[i] = trajet[j];
+		trajet[j] = ville;
+		for (int a = 0; a < nombreAretes; a++) {
+			variation += this.m_instance.getDistancesUnchecked(trajet[aretes[a]], trajet[(aretes[a]+1)%N]);
+		}
+		return variation;
+	}
 
 	// -----------------------------
 	// ----- GETTERS / SETTERS -----
@@ -469,110 +621,56 @@ public class TSPSolver {
 	public void setTimeLimit(long time) {
 		this.m_timeLimit = time;
 	}
-	
-	// Les méthodes qui suivent sont utilisées pour l'algorithme fourmi
-	
+
+	/** @return the algorithm used by {@link #solve()} */
+	public String getMethod() {
+		return m_method;
+	}
+
 	/**
-	 * Méthode retournant une matrice des inverses des distances entre les villes i et j
-	 *
-	 * @return visi matrices de double des inverses des distances.
-	 * @throws Exception the exception
+	 * Sets the algorithm used by {@link #solve()} (see #m_method).
+	 * @param method the name of the algorithm
 	 */
-	public double[][] visibilite() throws Exception{
-		double[][] visi=new double[this.m_instance.getNbCities()][this.m_instance.getNbCities()];
-		for (int i=0;i<this.m_instance.getNbCities();i++) {
-			for (int j=0;j<this.m_instance.getNbCities();j++) {
-				if (i!=j) {
-					visi[i][j]=1.0/this.m_instance.getDistances(i,j);
-				} else {
-					visi[i][j]=0;
-				}
-			}
-		}
-		return visi;
+	public void setMethod(String method) {
+		this.m_method = method;
 	}
-	
+
+	/** @return the acceptance criterion of the "ils" algorithm */
+	public String getAcceptance() {
+		return m_acceptance;
+	}
+
 	/**
-	 * @param visiteIterNow liste des listes de villes déjà visitées par les fourmis dans l'ordre de visite.
-	 * @return pheromone matrice de doubles de la quantité totale de phéromones sur le trajet ij
-	 * @throws Exception
+	 * Sets the acceptance criterion of the "ils" algorithm (see #m_acceptance).
+	 * @param acceptance "better", "equal" or "restart"
 	 */
-	public double[][] pheromone(ArrayList<ArrayList<Integer>> visiteIterNow) throws Exception {
-		int N = this.m_instance.getNbCities();
-		double[][] pheromone = new double[N][N];
-		Double[][] pt = this.pherotrajet(visiteIterNow); 
-		double rho = 0;
-		for (int i = 0; i < pt.length; i++) {
-			for (int j=0; j<pheromone.length; j++) {
-				pheromone[i][j] = 0.001;
-				pheromone[visiteIterNow.get(i).get(j)][visiteIterNow.get(i).get(j+1)] = pt[i][j] + ((1-rho)*pheromone[visiteIterNow.get(i).get(j)][visiteIterNow.get(i).get(j+1)]);
-			}
-		}
-		return pheromone;
+	public void setAcceptance(String acceptance) {
+		this.m_acceptance = acceptance;
 	}
-	
-	
+
+	/** @return the number of threads used by {@link #solve()} */
+	public int getNbThreads() {
+		return m_nbThreads;
+	}
+
 	/**
-	 * @param visiteIterNow liste des listes de villes déjà visitées par les fourmis dans l'ordre de visite.
-	 * @return ptrajet2 matrice de doubles de la quantité de phéromones déposée pendant l'itération
-	 * actuelle sur le trajet ij
-	 * @throws Exception
+	 * Sets the number of threads used by {@link #solve()} (see #m_nbThreads).
+	 * @param nbThreads the number of threads
 	 */
-	public Double[][] pherotrajet(ArrayList<ArrayList<Integer>> visiteIterNow) throws Exception {
-		ArrayList<Double> ptrajet1 = new ArrayList<Double>();
-		Double[][] ptrajet2 = new Double[visiteIterNow.size()][visiteIterNow.size()];
-		int N = this.m_instance.getNbCities();
-		double constanteQ = 1;
-		for (ArrayList<Integer> parcours : visiteIterNow) {
-			double longueurTrajet = 0.0;
-			for (int i = 0; i < N-1; i++) {
-				longueurTrajet += this.m_instance.getDistances(parcours.get(i), parcours.get(i+1));
-			}
-			ptrajet1.add(constanteQ/longueurTrajet);
-		}
-		for (int i=0; i<ptrajet2.length; i++) {
-			for (int j=0; j<ptrajet2.length; j++) {
-				ptrajet2[i][j] = 0.0;
-			}
-		}
-		
-		for (int k = 0; k < visiteIterNow.size(); k++) {
-			for (int i = 0; i < visiteIterNow.get(0).size()-1; i++) {
-				ptrajet2[visiteIterNow.get(k).get(i)][visiteIterNow.get(k).get(i+1)] += ptrajet1.get(k);
-			}
-		}
-		return ptrajet2;
+	public void setNbThreads(int nbThreads) {
+		this.m_nbThreads = nbThreads;
 	}
-	
-	
+
+	/** @return `true` if the statistics of the algorithm are printed */
+	public boolean isVerbose() {
+		return m_verbose;
+	}
+
 	/**
-	 * @param k numéro de la liste de villes, représentant le trajet de la fourmi k
-	 * @param depart numéro de la ville sur laquelle la fourmi est, c'est à dire la dernière ville visitée
-	 * @param visiteavant liste des listes de villes déjà visitées
-	 * @param avisiter liste des listes de villes qu'il reste à visiter pour chaque fourmi
-	 * @param visiFinale matrice des visibilités
-	 * @return proba, tableau de probabilités de visite de chaque ville restante par la fourmi k
-	 * @throws Exception
+	 * Sets whether {@link #solve()} prints the statistics of the algorithm (see #m_verbose).
+	 * @param verbose `true` to print them on the error output
 	 */
-	public double[] probaDeVisite(int k,int depart , ArrayList<ArrayList<Integer>> visiteavant, ArrayList<ArrayList<Integer>> avisiter, double[][] visiFinale) throws Exception {
-		int N = visiteavant.size();
-		double[][] pherofinal = this.pheromone(visiteavant);
-		double[] proba = new double[N];
-		double alpha = 0.5;
-		double beta = 1;
-		double gamma = 0.0;
-		double s =0.0;
-		for (int i=0;i<N;i++) {
-			proba[i]=gamma;
-			if (avisiter.get(k).contains(i)) {
-				s += gamma + Math.pow(pherofinal[depart][i],alpha)*Math.pow(visiFinale[depart][i],beta);			
-			}
-		}
-		for (int j=0; j<avisiter.get(k).size();j++) {
-			double p = (gamma +(Math.pow(pherofinal[depart][avisiter.get(k).get(j)],alpha)*Math.pow(visiFinale[depart][avisiter.get(k).get(j)],beta)))/s;
-			proba[avisiter.get(k).get(j)] = p;
-		}
-		return proba;
+	public void setVerbose(boolean verbose) {
+		this.m_verbose = verbose;
 	}
-	
-}
\ No newline at end of file
+}
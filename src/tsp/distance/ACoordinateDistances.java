@@ -0,0 +1,121 @@
+package tsp.distance;
+
+/**
+ * This is the abstract class for the distances computed on demand from the
+ * coordinates of the cities, without storing a matrix. The memory used is
+ * linear in the number of cities, so instances of hundreds of thousands of
+ * cities can be loaded.
+ *
+ * The distances between a city and its candidates (its nearest cities,
+ * which are most of the distances read by the local searches) can be kept
+ * in a cache, see {@link #setCandidates(int[], int)}.
+ *
+ * These distances cannot be set: {@link #set(int, int, long)} throws an
+ * UnsupportedOperationException.
+ *
+ * @version 2017
+ */
+abstract public class ACoordinateDistances extends ADistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** x coordinates for each city */
+	protected double[] m_x;
+
+	/** y coordinates for each city */
+	protected double[] m_y;
+
+	/** Number of candidates per city in the cache, 0 without cache. */
+	private int m_nbCandidates;
+
+	/** Candidates of city i at indices i*m_nbCandidates ... (i+1)*m_nbCandidates - 1. */
+	private int[] m_candidates;
+
+	/** m_candidateDistances[k] is the distance between i and m_candidates[k]. */
+	private long[] m_candidateDistances;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor. The arrays are not copied and must not be modified
+	 * afterwards.
+	 * @param x x coordinates for each city
+	 * @param y y coordinates for each city
+	 */
+	public ACoordinateDistances(double[] x, double[] y) {
+		super(x.length);
+		m_x = x;
+		m_y = y;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * @param i a city
+	 * @param j a city
+	 * @return the distance between i and j computed from the coordinates
+	 */
+	protected abstract long compute(int i, int j);
+
+	/**
+	 * Fills the cache with the distances between each city and its
+	 * candidates.
+	 *
+	 * @param candidates the candidates of city i at indices i*nbCandidates
+	 *        ... (i+1)*nbCandidates - 1 (the array is not copied)
+	 * @param nbCandidates the number of candidates per city, 0 to remove the
+	 *        cache
+	 */
+	public void setCandidates(int[] candidates, int nbCandidates) {
+		m_nbCandidates = 0;
+		if (nbCandidates == 0) {
+			m_candidates = null;
+			m_candidateDistances = null;
+			return;
+		}
+		long[] distances = new long[m_nbCities * nbCandidates];
+		for (int i = 0; i < m_nbCities; i++) {
+			for (int k = i * nbCandidates; k < (i + 1) * nbCandidates; k++) {
+				distances[k] = compute(i, candidates[k]);
+			}
+		}
+		m_candidates = candidates;
+		m_candidateDistances = distances;
+		m_nbCandidates = nbCandidates;
+	}
+
+	@Override
+	public long get(int i, int j) {
+		if (i == j) {
+			return 0;
+		}
+		for (int k = i * m_nbCandidates, end = k + m_nbCandidates; k < end; k++) {
+			if (m_candidates[k] == j) {
+				return m_candidateDistances[k];
+			}
+		}
+		return compute(i, j);
+	}
+
+	@Override
+	public void set(int i, int j, long distance) {
+		throw new UnsupportedOperationException("Error : the distances computed from the coordinates cannot be set.");
+	}
+
+	@Override
+	public long getMemorySize() {
+		long size = 16L * m_nbCities;
+		if (m_candidates != null) {
+			size += 8L * m_candidateDistances.length;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,124 @@
+package tsp.distance;
+
+/**
+ * This is the abstract class for the storages of the distances between the
+ * cities of an instance.
+ *
+ * The distances are symmetric and the distance from a city to itself is 0.
+ * A matrix is filled with {@link #set(int, int, long)} for the pairs i < j,
+ * each pair being set at most once; different pairs may be set from
+ * different threads. It is then only read, from any number of threads.
+ *
+ * {@link #create(int, long, long, boolean)} chooses the most compact storage
+ * for the range of the distances of the instance, on the Java heap or off
+ * the heap.
+ *
+ * @version 2017
+ */
+abstract public class ADistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of cities. */
+	protected int m_nbCities;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 */
+	public ADistanceMatrix(int nbCities) {
+		m_nbCities = nbCities;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Creates an empty matrix on the Java heap able to store distances between
+	 * minValue and maxValue: a triangular matrix of chars (2 bytes per pair)
+	 * if they fit in [0, 65535], of ints (4 bytes per pair) if they fit in an
+	 * int, and a full matrix of longs otherwise (16 bytes per pair).
+	 *
+	 * @param nbCities the number of cities
+	 * @param minValue a lower bound of the distances
+	 * @param maxValue an upper bound of the distances
+	 * @return the matrix
+	 * @throws Exception if there are too many cities for the chosen storage
+	 */
+	public static ADistanceMatrix create(int nbCities, long minValue, long maxValue) throws Exception {
+		return create(nbCities, minValue, maxValue, false);
+	}
+
+	/**
+	 * Creates an empty matrix able to store distances between minValue and
+	 * maxValue. Off the heap, it is a {@link BufferDistanceMatrix} of 2, 4 or
+	 * 8 bytes per pair in direct buffers, which the garbage collector does
+	 * not scan or move; its size is only bounded by -XX:MaxDirectMemorySize.
+	 *
+	 * @param nbCities the number of cities
+	 * @param minValue a lower bound of the distances
+	 * @param maxValue an upper bound of the distances
+	 * @param offHeap `true` to store the matrix off the Java heap
+	 * @return the matrix
+	 * @throws Exception if there are too many cities for the chosen storage
+	 */
+	public static ADistanceMatrix create(int nbCities, long minValue, long maxValue, boolean offHeap) throws Exception {
+		if (minValue >= 0 && maxValue <= CharDistanceMatrix.MAX_VALUE) {
+			return offHeap ? BufferDistanceMatrix.allocateDirect(nbCities, 2) : new CharDistanceMatrix(nbCities);
+		}
+		if (minValue >= Integer.MIN_VALUE && maxValue <= Integer.MAX_VALUE) {
+			return offHeap ? BufferDistanceMatrix.allocateDirect(nbCities, 4) : new IntDistanceMatrix(nbCities);
+		}
+		return offHeap ? BufferDistanceMatrix.allocateDirect(nbCities, 8) : new LongDistanceMatrix(nbCities);
+	}
+
+	/**
+	 * @param i a city
+	 * @param j a city
+	 * @return the distance between i and j. The city numbers are not checked.
+	 */
+	public abstract long get(int i, int j);
+
+	/**
+	 * Sets the distance between i and j.
+	 * @param i a city
+	 * @param j a city greater than i
+	 * @param distance the distance, in the range given at the creation
+	 */
+	public abstract void set(int i, int j, long distance);
+
+	/**
+	 * @param tour a sequence of cities, which are not checked
+	 * @param nbEdges the number of edges of the path
+	 * @return the length of the path tour[0], tour[1], ..., tour[nbEdges]
+	 */
+	public long getLength(int[] tour, int nbEdges) {
+		long length = 0;
+		for (int k = 0; k < nbEdges; k++) {
+			length += get(tour[k], tour[k + 1]);
+		}
+		return length;
+	}
+
+	/** @return the number of bytes used to store the distances */
+	public abstract long getMemorySize();
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of cities */
+	public int getNbCities() {
+		return m_nbCities;
+	}
+}
@@ -0,0 +1,61 @@
+package tsp.distance;
+
+/**
+ * This is the abstract class for the matrices storing only the pairs i < j,
+ * row by row, in a flat array: the pair (i,j) is at index
+ * m_rowStart[i] + j.
+ *
+ * @version 2017
+ */
+abstract public class ATriangularDistanceMatrix extends ADistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Greatest number of entries of a Java array. */
+	public static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+
+	/** m_rowStart[i] + j is the index of the pair (i,j), i < j. */
+	protected int[] m_rowStart;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 * @throws Exception if the number of pairs does not fit in an array
+	 */
+	public ATriangularDistanceMatrix(int nbCities) throws Exception {
+		super(nbCities);
+		if (getNbEntries() > MAX_ENTRIES) {
+			throw new Exception("Error : " + nbCities + " cities are too many for a triangular distance matrix ("
+					+ getNbEntries() + " pairs).");
+		}
+		m_rowStart = new int[nbCities];
+		long start = 0;
+		for (int i = 0; i < nbCities; i++) {
+			// row i holds the pairs (i, i+1) ... (i, n-1)
+			m_rowStart[i] = (int) (start - i - 1);
+			start += nbCities - 1 - i;
+		}
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/** @return the index of the pair (i,j) in the flat array, i != j */
+	protected final int index(int i, int j) {
+		return (i < j) ? m_rowStart[i] + j : m_rowStart[j] + i;
+	}
+
+	/** @return the number of pairs i < j */
+	protected final long getNbEntries() {
+		return (long) m_nbCities * (m_nbCities - 1) / 2;
+	}
+}
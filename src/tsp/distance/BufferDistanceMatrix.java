@@ -0,0 +1,246 @@
+package tsp.distance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Triangular distance matrix stored in byte buffers: the mapping of a file
+ * (see {@link #map(FileChannel, long, int, int)}) or direct buffers
+ * allocated off the Java heap (see {@link #allocateDirect(int, int)}).
+ *
+ * The pairs i < j are stored row by row as in
+ * {@link ATriangularDistanceMatrix}, in little-endian integers of 2
+ * (unsigned), 4 or 8 bytes. The offsets are longs and the entries are split
+ * in chunks of 2^{@link #CHUNK_BITS} bytes, so the matrix is not bound by the
+ * size of a Java array.
+ *
+ * @version 2017
+ */
+public class BufferDistanceMatrix extends ADistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Logarithm of the number of bytes of a chunk. */
+	public static final int CHUNK_BITS = 30;
+
+	/** Mask of the offset in a chunk. */
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	/** Size of the buffer used by {@link #write(ADistanceMatrix, int, WritableByteChannel)}. */
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	/** The chunks of entries: the byte at offset o is in m_chunks[o >>> CHUNK_BITS]. */
+	private ByteBuffer[] m_chunks;
+
+	/** Number of bytes of an entry: 2, 4 or 8. */
+	private int m_entrySize;
+
+	/** Logarithm of m_entrySize. */
+	private int m_entryShift;
+
+	/** m_rowStart[i] + j is the index of the pair (i,j), i < j. */
+	private long[] m_rowStart;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 * @param entrySize the number of bytes of an entry: 2, 4 or 8
+	 * @param chunks the chunks of entries, of 2^CHUNK_BITS bytes except the
+	 *        last one (their byte order is set to little-endian)
+	 * @throws Exception if the entry size is not valid or the chunks are too small
+	 */
+	public BufferDistanceMatrix(int nbCities, int entrySize, ByteBuffer[] chunks) throws Exception {
+		super(nbCities);
+		if (entrySize != 2 && entrySize != 4 && entrySize != 8) {
+			throw new Exception("Error : the entry size " + entrySize + " should be 2, 4 or 8.");
+		}
+		long size = 0;
+		for (ByteBuffer chunk : chunks) {
+			chunk.order(ByteOrder.LITTLE_ENDIAN);
+			size += chunk.capacity();
+		}
+		if (size < getNbBytes(nbCities, entrySize)) {
+			throw new Exception("Error : " + size + " bytes are not enough for " + nbCities + " cities.");
+		}
+		m_chunks = chunks;
+		m_entrySize = entrySize;
+		m_entryShift = Integer.numberOfTrailingZeros(entrySize);
+		m_rowStart = new long[nbCities];
+		long start = 0;
+		for (int i = 0; i < nbCities; i++) {
+			// row i holds the pairs (i, i+1) ... (i, n-1)
+			m_rowStart[i] = start - i - 1;
+			start += nbCities - 1 - i;
+		}
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Allocates an empty matrix in direct buffers, off the Java heap. The
+	 * memory is released when the matrix is garbage collected.
+	 *
+	 * @param nbCities the number of cities
+	 * @param entrySize the number of bytes of an entry: 2, 4 or 8
+	 * @return the matrix
+	 * @throws Exception if the direct memory is exhausted
+	 */
+	public static BufferDistanceMatrix allocateDirect(int nbCities, int entrySize) throws Exception {
+		long size = getNbBytes(nbCities, entrySize);
+		ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+		try {
+			for (int c = 0; c < chunks.length; c++) {
+				long start = (long) c << CHUNK_BITS;
+				chunks[c] = ByteBuffer.allocateDirect((int) Math.min(size - start, 1L << CHUNK_BITS));
+			}
+		} catch (OutOfMemoryError e) {
+			throw new Exception("Error : " + size + " bytes of direct memory cannot be allocated for " + nbCities
+					+ " cities (see the -XX:MaxDirectMemorySize option of the JVM).");
+		}
+		return new BufferDistanceMatrix(nbCities, entrySize, chunks);
+	}
+
+	/**
+	 * Maps a matrix written by {@link #write(ADistanceMatrix, int, WritableByteChannel)}
+	 * from a file. The mapping stays valid after the channel is closed.
+	 *
+	 * @param channel the file
+	 * @param position the offset of the first entry in the file
+	 * @param nbCities the number of cities
+	 * @param entrySize the number of bytes of an entry: 2, 4 or 8
+	 * @return the matrix, read-only
+	 * @throws Exception if the file cannot be mapped
+	 */
+	public static BufferDistanceMatrix map(FileChannel channel, long position, int nbCities, int entrySize) throws Exception {
+		long size = getNbBytes(nbCities, entrySize);
+		ByteBuffer[] chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int c = 0; c < chunks.length; c++) {
+			long start = (long) c << CHUNK_BITS;
+			chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position + start, Math.min(size - start, 1L << CHUNK_BITS));
+		}
+		return new BufferDistanceMatrix(nbCities, entrySize, chunks);
+	}
+
+	/**
+	 * Writes the pairs i < j of a matrix row by row, in the layout of this
+	 * class.
+	 *
+	 * @param matrix the matrix
+	 * @param entrySize the number of bytes of an entry: 2, 4 or 8 (see {@link #getEntrySize(ADistanceMatrix)})
+	 * @param out the output
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void write(ADistanceMatrix matrix, int entrySize, WritableByteChannel out) throws IOException {
+		int n = matrix.getNbCities();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < n; i++) {
+			for (int j = i + 1; j < n; j++) {
+				if (buffer.remaining() < entrySize) {
+					flush(buffer, out);
+				}
+				long distance = matrix.get(i, j);
+				switch (entrySize) {
+				case 2:
+					buffer.putChar((char) distance);
+					break;
+				case 4:
+					buffer.putInt((int) distance);
+					break;
+				default:
+					buffer.putLong(distance);
+				}
+			}
+		}
+		flush(buffer, out);
+	}
+
+	/** Write the content of buffer to out and clear it. */
+	private static void flush(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * @param matrix a matrix
+	 * @return the smallest entry size able to store the distances of matrix
+	 *         (2 for a {@link CharDistanceMatrix}, 4 for an
+	 *         {@link IntDistanceMatrix}, 8 otherwise)
+	 */
+	public static int getEntrySize(ADistanceMatrix matrix) {
+		if (matrix instanceof CharDistanceMatrix) {
+			return 2;
+		}
+		if (matrix instanceof IntDistanceMatrix) {
+			return 4;
+		}
+		if (matrix instanceof BufferDistanceMatrix) {
+			return ((BufferDistanceMatrix) matrix).m_entrySize;
+		}
+		return 8;
+	}
+
+	/**
+	 * @param nbCities the number of cities
+	 * @param entrySize the number of bytes of an entry
+	 * @return the number of bytes of the entries of a matrix
+	 */
+	public static long getNbBytes(int nbCities, int entrySize) {
+		return (long) nbCities * (nbCities - 1) / 2 * entrySize;
+	}
+
+	@Override
+	public long get(int i, int j) {
+		if (i == j) {
+			return 0;
+		}
+		long offset = ((i < j) ? m_rowStart[i] + j : m_rowStart[j] + i) << m_entryShift;
+		ByteBuffer chunk = m_chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & CHUNK_MASK);
+		switch (m_entrySize) {
+		case 2:
+			return chunk.getChar(position);
+		case 4:
+			return chunk.getInt(position);
+		default:
+			return chunk.getLong(position);
+		}
+	}
+
+	@Override
+	public void set(int i, int j, long distance) {
+		long offset = (m_rowStart[i] + j) << m_entryShift;
+		ByteBuffer chunk = m_chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & CHUNK_MASK);
+		switch (m_entrySize) {
+		case 2:
+			chunk.putChar(position, (char) distance);
+			break;
+		case 4:
+			chunk.putInt(position, (int) distance);
+			break;
+		default:
+			chunk.putLong(position, distance);
+		}
+	}
+
+	@Override
+	public long getMemorySize() {
+		return getNbBytes(m_nbCities, m_entrySize);
+	}
+}
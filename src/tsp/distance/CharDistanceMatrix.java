@@ -0,0 +1,55 @@
+package tsp.distance;
+
+/**
+ * Triangular distance matrix of 16 bits unsigned integers, for the
+ * instances whose distances are between 0 and 65535.
+ *
+ * @version 2017
+ */
+public class CharDistanceMatrix extends ATriangularDistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Greatest distance that can be stored. */
+	public static final long MAX_VALUE = Character.MAX_VALUE;
+
+	/** The distances of the pairs i < j. */
+	private char[] m_distances;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 * @throws Exception if the number of pairs does not fit in an array
+	 */
+	public CharDistanceMatrix(int nbCities) throws Exception {
+		super(nbCities);
+		m_distances = new char[(int) getNbEntries()];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public long get(int i, int j) {
+		return (i == j) ? 0 : m_distances[index(i, j)];
+	}
+
+	@Override
+	public void set(int i, int j, long distance) {
+		m_distances[m_rowStart[i] + j] = (char) distance;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return 2L * m_distances.length;
+	}
+}
@@ -0,0 +1,122 @@
+package tsp.distance;
+
+/**
+ * Kernels computing the length of a path of EUC_2D or GEO cities from their
+ * coordinates.
+ *
+ * This class holds the scalar kernels. The Vector API kernel of
+ * VectorDistanceKernels (source folder src-vector) needs the incubator module
+ * jdk.incubator.vector: {@link #get()} returns it when this module is in the
+ * boot layer (java --add-modules jdk.incubator.vector) and the class was
+ * compiled, and the scalar kernels otherwise. Both return exactly the
+ * distances of {@link EuclideanDistances#distance(double, double, double, double)}
+ * and of {@link GeoDistances}.
+ *
+ * The kernels have no state and may be called from any number of threads.
+ *
+ * @version 2017
+ */
+public class DistanceKernels {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Name of the class of the Vector API kernels. */
+	private static final String VECTOR_KERNELS = "tsp.distance.VectorDistanceKernels";
+
+	/** Name of the module of the Vector API. */
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	/** The kernels returned by {@link #get()}. */
+	private static final DistanceKernels SELECTED = select();
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor of the scalar kernels.
+	 */
+	public DistanceKernels() {
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/** @return the Vector API kernels if they are available, the scalar kernels otherwise */
+	public static DistanceKernels get() {
+		return SELECTED;
+	}
+
+	/**
+	 * @return the Vector API kernels, null if the module jdk.incubator.vector
+	 *         is not in the boot layer or the class was not compiled
+	 */
+	public static DistanceKernels createVectorKernels() {
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+			return null;
+		}
+		try {
+			return (DistanceKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	/** @return the kernels returned by {@link #get()} */
+	private static DistanceKernels select() {
+		DistanceKernels kernels = createVectorKernels();
+		return (kernels == null) ? new DistanceKernels() : kernels;
+	}
+
+	/**
+	 * @param x x coordinates for each city
+	 * @param y y coordinates for each city
+	 * @param tour a sequence of cities, which are not checked
+	 * @param nbEdges the number of edges of the path
+	 * @return the EUC_2D length of the path tour[0], tour[1], ..., tour[nbEdges]
+	 */
+	public long euclideanLength(double[] x, double[] y, int[] tour, int nbEdges) {
+		long length = 0;
+		for (int k = 0; k < nbEdges; k++) {
+			int i = tour[k];
+			int j = tour[k + 1];
+			length += EuclideanDistances.distance(x[i], y[i], x[j], y[j]);
+		}
+		return length;
+	}
+
+	/**
+	 * @param unitVectors the unit vectors of the cities, see {@link GeoDistances#getUnitVectors()}
+	 * @param x x coordinates for each city, in degrees
+	 * @param y y coordinates for each city, in degrees
+	 * @param tour a sequence of cities, which are not checked
+	 * @param nbEdges the number of edges of the path
+	 * @return the GEO length of the path tour[0], tour[1], ..., tour[nbEdges],
+	 *         the distance between a city and itself being 0
+	 */
+	public long geoLength(double[] unitVectors, double[] x, double[] y, int[] tour, int nbEdges) {
+		long length = 0;
+		for (int k = 0; k < nbEdges; k++) {
+			// the TSPLIB formula gives 1 between a city and itself
+			if (tour[k] != tour[k + 1]) {
+				length += GeoDistances.distance(unitVectors, x, y, tour[k], tour[k + 1]);
+			}
+		}
+		return length;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the name of the kernels */
+	public String getName() {
+		return "scalar";
+	}
+}
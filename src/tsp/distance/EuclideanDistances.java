@@ -0,0 +1,72 @@
+package tsp.distance;
+
+/**
+ * EUC_2D distances computed on demand: the euclidean distance rounded to
+ * the nearest integer.
+ *
+ * @version 2017
+ */
+public class EuclideanDistances extends ACoordinateDistances {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/**
+	 * Relative distance to a half-integer below which the distance is
+	 * recomputed with Math.hypot. Math.sqrt(dx*dx + dy*dy) is within a few
+	 * ulps of Math.hypot(dx, dy), so both round to the same integer outside
+	 * of this margin.
+	 */
+	static final double TIE_TOLERANCE = 1e-12;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor. The arrays are not copied and must not be modified
+	 * afterwards.
+	 * @param x x coordinates for each city
+	 * @param y y coordinates for each city
+	 */
+	public EuclideanDistances(double[] x, double[] y) {
+		super(x, y);
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Computes the euclidean distance between two points rounded to the
+	 * nearest integer (ties to the even integer), that is
+	 * Math.rint(Math.hypot(xi - xj, yi - yj)). The square root is used
+	 * instead of the slower Math.hypot, except near the half-integers where
+	 * their rounding could differ.
+	 *
+	 * @return the rounded euclidean distance between (xi,yi) and (xj,yj)
+	 */
+	public static long distance(double xi, double yi, double xj, double yj) {
+		double dx = xi - xj;
+		double dy = yi - yj;
+		double d = Math.sqrt(dx * dx + dy * dy);
+		double rounded = Math.rint(d);
+		if (Math.abs(Math.abs(d - rounded) - 0.5) <= TIE_TOLERANCE * (d + 1.0) || Double.isInfinite(d)) {
+			return (long) Math.rint(Math.hypot(dx, dy));
+		}
+		return (long) rounded;
+	}
+
+	@Override
+	protected long compute(int i, int j) {
+		return distance(m_x[i], m_y[i], m_x[j], m_y[j]);
+	}
+
+	@Override
+	public long getLength(int[] tour, int nbEdges) {
+		return DistanceKernels.get().euclideanLength(m_x, m_y, tour, nbEdges);
+	}
+}
@@ -0,0 +1,161 @@
+package tsp.distance;
+
+/**
+ * GEO distances computed on demand: the distance on the earth sphere
+ * rounded as in the TSPLIB, from coordinates given in degrees (x is used as
+ * the longitude and y as the latitude).
+ *
+ * The argument of the arc cosine of the TSPLIB formula is the dot product
+ * of the unit vectors of the two cities, which are computed once when the
+ * object is created, and Math.acos (which is not an intrinsic and costs
+ * about 250 ns) is replaced by a polynomial approximation whose error is
+ * below 3e-8 radians: a distance costs a dot product, a square root and a
+ * polynomial instead of three cosines, an arc cosine and four conversions to
+ * radians. The result is truncated to an integer, so when it is too close to
+ * an integer for these errors, or when the cities are almost equal or
+ * antipodal (where the arc cosine amplifies the rounding errors of the dot
+ * product), the distance is recomputed by
+ * {@link #distance(double, double, double, double)}. Both computations thus
+ * return the same distances.
+ *
+ * @version 2017
+ */
+public class GeoDistances extends ACoordinateDistances {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Radius of the earth in the TSPLIB. */
+	private static final double RRR = 6378.388;
+
+	/**
+	 * Distance (in km) to an integer below which the distance is recomputed:
+	 * 7 times the error of {@link #acos(double)} on the earth sphere.
+	 */
+	private static final double TRUNCATION_TOLERANCE = 1e-3;
+
+	/** Dot products above which (almost equal cities) the distance is recomputed. */
+	private static final double MAX_FAST_DOT = 1.0 - 1e-9;
+
+	/** Dot products below which (almost antipodal cities) the distance is recomputed. */
+	private static final double MIN_FAST_DOT = -1.0 + 1e-9;
+
+	/** Unit vectors of the cities: city i at indices 3*i, 3*i+1 and 3*i+2. */
+	private double[] m_unitVectors;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor. The arrays are not copied and must not be modified
+	 * afterwards: the coordinates converted for the display must not be given.
+	 * @param x x coordinates for each city, in degrees
+	 * @param y y coordinates for each city, in degrees
+	 */
+	public GeoDistances(double[] x, double[] y) {
+		super(x, y);
+		double PI = 3.141592;
+		m_unitVectors = new double[3 * m_nbCities];
+		for (int i = 0; i < m_nbCities; i++) {
+			double longRadian = PI*x[i]/180.0;
+			double latRadian = PI*y[i]/180.0;
+			m_unitVectors[3 * i] = Math.cos(latRadian) * Math.cos(longRadian);
+			m_unitVectors[3 * i + 1] = Math.cos(latRadian) * Math.sin(longRadian);
+			m_unitVectors[3 * i + 2] = Math.sin(latRadian);
+		}
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Computes the geographical distance between two points
+	 * @return the geographical distance between (xi,yi) and (xj,yj)
+	 */
+	public static long distance(double xi, double yi, double xj, double yj) {
+
+		double PI = 3.141592;
+		double longRadianI = PI*xi/180.0;
+		double latRadianI = PI*yi/180.0;
+		double longRadianJ = PI*xj/180.0;
+		double latRadianJ = PI*yj/180.0;
+		double q1 = Math.cos(longRadianI - longRadianJ);
+		double q2 = Math.cos(latRadianI - latRadianJ);
+		double q3 = Math.cos(latRadianI + latRadianJ);
+
+		int res = (int) (RRR*Math.acos(0.5*((1.0+q1)*q2-(1.0-q1)*q3))+1.0);
+		return res;
+	}
+
+	/**
+	 * Approximation of Math.acos(x) with an absolute error below 3e-8
+	 * (Abramowitz and Stegun, 4.4.46).
+	 * @param x a number between -1 and 1
+	 * @return the arc cosine of x, in radians
+	 */
+	private static double acos(double x) {
+		double a = Math.abs(x);
+		double p = ((((((-0.0012624911 * a + 0.0066700901) * a - 0.0170881256) * a + 0.0308918810) * a
+				- 0.0501743046) * a + 0.0889789874) * a - 0.2145988016) * a + 1.5707963050;
+		double r = Math.sqrt(1.0 - a) * p;
+		return (x < 0) ? Math.PI - r : r;
+	}
+
+	/**
+	 * Computes the distance between cities i and j from their unit vectors,
+	 * or from their coordinates when the polynomial is not accurate enough.
+	 *
+	 * @param unitVectors the unit vectors of the cities, see {@link #getUnitVectors()}
+	 * @param x x coordinates for each city, in degrees
+	 * @param y y coordinates for each city, in degrees
+	 * @return the same distance as {@link #distance(double, double, double, double)}
+	 */
+	static long distance(double[] unitVectors, double[] x, double[] y, int i, int j) {
+		int a = 3 * i;
+		int b = 3 * j;
+		// 0.5*((1+q1)*q2 - (1-q1)*q3) = sin(latI)sin(latJ) + cos(latI)cos(latJ)cos(longI-longJ)
+		double dot = unitVectors[a] * unitVectors[b] + unitVectors[a + 1] * unitVectors[b + 1]
+				+ unitVectors[a + 2] * unitVectors[b + 2];
+		if (dot < MAX_FAST_DOT && dot > MIN_FAST_DOT) {
+			double d = RRR*acos(dot)+1.0;
+			double fraction = d - Math.floor(d);
+			if (fraction > TRUNCATION_TOLERANCE && fraction < 1.0 - TRUNCATION_TOLERANCE) {
+				return (int) d;
+			}
+		}
+		return distance(x[i], y[i], x[j], y[j]);
+	}
+
+	@Override
+	protected long compute(int i, int j) {
+		return distance(m_unitVectors, m_x, m_y, i, j);
+	}
+
+	@Override
+	public long getLength(int[] tour, int nbEdges) {
+		return DistanceKernels.get().geoLength(m_unitVectors, m_x, m_y, tour, nbEdges);
+	}
+
+	@Override
+	public long getMemorySize() {
+		return super.getMemorySize() + 8L * m_unitVectors.length;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/**
+	 * @return the unit vectors of the cities (city i at indices 3*i, 3*i+1 and
+	 *         3*i+2). The returned array is shared and must not be modified.
+	 */
+	public double[] getUnitVectors() {
+		return m_unitVectors;
+	}
+}
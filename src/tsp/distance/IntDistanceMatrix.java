@@ -0,0 +1,52 @@
+package tsp.distance;
+
+/**
+ * Triangular distance matrix of 32 bits integers, for the instances
+ * whose distances fit in an int.
+ *
+ * @version 2017
+ */
+public class IntDistanceMatrix extends ATriangularDistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** The distances of the pairs i < j. */
+	private int[] m_distances;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 * @throws Exception if the number of pairs does not fit in an array
+	 */
+	public IntDistanceMatrix(int nbCities) throws Exception {
+		super(nbCities);
+		m_distances = new int[(int) getNbEntries()];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public long get(int i, int j) {
+		return (i == j) ? 0 : m_distances[index(i, j)];
+	}
+
+	@Override
+	public void set(int i, int j, long distance) {
+		m_distances[m_rowStart[i] + j] = (int) distance;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return 4L * m_distances.length;
+	}
+}
@@ -0,0 +1,53 @@
+package tsp.distance;
+
+/**
+ * Full distance matrix of longs, for the instances whose distances do not
+ * fit in an int. Both triangles are stored, so a distance is read without
+ * ordering the cities.
+ *
+ * @version 2017
+ */
+public class LongDistanceMatrix extends ADistanceMatrix {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** m_distances[i][j] is the distance between i and j. */
+	private long[][] m_distances;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities
+	 */
+	public LongDistanceMatrix(int nbCities) {
+		super(nbCities);
+		m_distances = new long[nbCities][nbCities];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public long get(int i, int j) {
+		return m_distances[i][j];
+	}
+
+	@Override
+	public void set(int i, int j, long distance) {
+		m_distances[i][j] = distance;
+		m_distances[j][i] = distance;
+	}
+
+	@Override
+	public long getMemorySize() {
+		return 8L * m_nbCities * m_nbCities;
+	}
+}
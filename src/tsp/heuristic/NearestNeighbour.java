@@ -0,0 +1,155 @@
+package tsp.heuristic;
+
+import java.util.Arrays;
+
+import tsp.Instance;
+import tsp.spatial.KdTree;
+
+/**
+ * Nearest neighbour heuristic: the tour starts from a city and goes each time
+ * to the nearest city not visited yet.
+ *
+ * The nearest unvisited city is first searched in the candidate list of the
+ * current city (sorted by increasing distance, its first unvisited city is
+ * the nearest one). When all the candidates are visited, it is searched in a
+ * k-d tree from which the visited cities are removed (see
+ * {@link KdTree#nearestAlive(int)}), or for the EDGE_WEIGHT_SECTION
+ * instances by a scan of the row of the distance matrix. The construction
+ * costs O(n log n) on the coordinate instances instead of the O(n^2) scans of
+ * the whole matrix.
+ *
+ * The tree is built once and reused by the following constructions.
+ *
+ * @version 2017
+ */
+public class NearestNeighbour extends AHeuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** First city of the tour built by {@link #solve()}. */
+	private int m_start;
+
+	/** Tree of the unvisited cities, null for the EDGE_WEIGHT_SECTION instances. */
+	private KdTree m_tree;
+
+	/** m_visited[i] is `true` if city i is in the tour being built. */
+	private boolean[] m_visited;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public NearestNeighbour(Instance instance) throws Exception {
+		super(instance, "Nearest neighbour");
+		m_tree = instance.createKdTree();
+		m_visited = new boolean[instance.getNbCities()];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public void solve() throws Exception {
+		m_solution.setTour(buildTour(m_start));
+		m_solution.evaluate();
+	}
+
+	/**
+	 * Builds a nearest neighbour tour.
+	 * @param start the first city of the tour
+	 * @return the open tour: the n cities in the order of the tour, starting
+	 *         with start
+	 * @throws Exception if start is not a valid city
+	 */
+	public int[] buildTour(int start) throws Exception {
+		int n = m_instance.getNbCities();
+		if ((start < 0) || (start >= Math.max(1, n))) {
+			throw new Exception("Error NearestNeighbour : city index " + start + " should range between 0 and " + (n - 1) + ".");
+		}
+		int[] tour = new int[n];
+		if (n == 0) {
+			return tour;
+		}
+		int nbCandidates = m_instance.getNbCandidates();
+		int[] candidates = m_instance.getCandidates();
+		if (m_tree != null) {
+			m_tree.restoreAll();
+		}
+		Arrays.fill(m_visited, false);
+
+		int city = start;
+		tour[0] = city;
+		visit(city);
+		for (int k = 1; k < n; k++) {
+			int next = -1;
+			for (int r = city * nbCandidates; r < (city + 1) * nbCandidates; r++) {
+				if (!m_visited[candidates[r]]) {
+					next = candidates[r];
+					break;
+				}
+			}
+			if (next < 0) {
+				next = (m_tree != null) ? m_tree.nearestAlive(city) : nearestUnvisited(city);
+			}
+			city = next;
+			tour[k] = city;
+			visit(city);
+		}
+		return tour;
+	}
+
+	/** Marks city as visited. */
+	private void visit(int city) {
+		m_visited[city] = true;
+		if (m_tree != null) {
+			m_tree.remove(city);
+		}
+	}
+
+	/**
+	 * @param city a city
+	 * @return the nearest unvisited city of city (the smallest one in case of
+	 *         ties), found by a scan of the distances
+	 */
+	private int nearestUnvisited(int city) {
+		int nearest = -1;
+		long distanceMin = Long.MAX_VALUE;
+		for (int i = 0; i < m_visited.length; i++) {
+			if (!m_visited[i]) {
+				long distance = m_instance.getDistancesUnchecked(city, i);
+				if (distance < distanceMin) {
+					distanceMin = distance;
+					nearest = i;
+				}
+			}
+		}
+		return nearest;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the first city of the tour built by {@link #solve()} */
+	public int getStart() {
+		return m_start;
+	}
+
+	/**
+	 * Sets the first city of the tour built by {@link #solve()} (0 by default).
+	 * @param start a city
+	 */
+	public void setStart(int start) {
+		m_start = start;
+	}
+}
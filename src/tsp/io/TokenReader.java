@@ -0,0 +1,298 @@
+package tsp.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming byte-level reader of the TSPLIB files.
+ *
+ * The file is read through a FileChannel into a fixed buffer and the tokens
+ * are delimited by ASCII white spaces. Integers and decimal numbers are
+ * parsed directly from the bytes, without creating strings: a decimal
+ * number whose significant digits fit in 15 digits and whose decimal
+ * exponent is at most 22 is computed exactly with one multiplication or
+ * division by a power of ten (both operands are exact doubles, so the
+ * result is correctly rounded); the other numbers are given to
+ * Double.parseDouble.
+ *
+ * @version 2017
+ */
+public class TokenReader implements Closeable {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Size of the read buffer. */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** Exact powers of ten of the fast path. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/** The file read. */
+	private FileChannel m_channel;
+
+	/** The read buffer. */
+	private byte[] m_buffer;
+
+	/** Wrapper of m_buffer used to read the channel. */
+	private ByteBuffer m_byteBuffer;
+
+	/** Index of the next byte in m_buffer. */
+	private int m_position;
+
+	/** Number of valid bytes in m_buffer. */
+	private int m_limit;
+
+	/** Bytes of the current token (for the strings and the slow path). */
+	private byte[] m_token;
+
+	/** Number of bytes in m_token. */
+	private int m_tokenLength;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param path the file to read
+	 * @throws IOException if the file cannot be opened
+	 */
+	public TokenReader(Path path) throws IOException {
+		m_channel = FileChannel.open(path, StandardOpenOption.READ);
+		m_buffer = new byte[BUFFER_SIZE];
+		m_byteBuffer = ByteBuffer.wrap(m_buffer);
+		m_token = new byte[64];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * @return the next byte without consuming it, -1 at the end of the file
+	 */
+	private int peek() throws IOException {
+		if (m_position == m_limit) {
+			m_byteBuffer.clear();
+			int read;
+			do {
+				read = m_channel.read(m_byteBuffer);
+			} while (read == 0);
+			if (read < 0) {
+				return -1;
+			}
+			m_position = 0;
+			m_limit = read;
+		}
+		return m_buffer[m_position] & 0xff;
+	}
+
+	/** @return `true` if b is an ASCII white space */
+	private static boolean isSpace(int b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+	}
+
+	/**
+	 * Skip the white spaces.
+	 * @return `true` if a token follows, `false` at the end of the file
+	 */
+	public boolean hasNext() throws IOException {
+		int b = peek();
+		while (b >= 0 && isSpace(b)) {
+			m_position++;
+			b = peek();
+		}
+		return b >= 0;
+	}
+
+	/** Read the next token in m_token. */
+	private void readToken() throws IOException {
+		if (!hasNext()) {
+			throw new IOException("Unexpected end of file");
+		}
+		m_tokenLength = 0;
+		int b = peek();
+		while (b >= 0 && !isSpace(b)) {
+			if (m_tokenLength == m_token.length) {
+				m_token = Arrays.copyOf(m_token, 2 * m_token.length);
+			}
+			m_token[m_tokenLength++] = (byte) b;
+			m_position++;
+			b = peek();
+		}
+	}
+
+	/** @return the next token */
+	public String next() throws IOException {
+		readToken();
+		return new String(m_token, 0, m_tokenLength, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return the rest of the current line, without the end of line, null at
+	 *         the end of the file
+	 */
+	public String nextLine() throws IOException {
+		int b = peek();
+		if (b < 0) {
+			return null;
+		}
+		m_tokenLength = 0;
+		while (b >= 0 && b != '\n') {
+			if (m_tokenLength == m_token.length) {
+				m_token = Arrays.copyOf(m_token, 2 * m_token.length);
+			}
+			m_token[m_tokenLength++] = (byte) b;
+			m_position++;
+			b = peek();
+		}
+		if (b == '\n') {
+			m_position++;
+		}
+		int length = m_tokenLength;
+		if (length > 0 && m_token[length - 1] == '\r') {
+			length--;
+		}
+		return new String(m_token, 0, length, StandardCharsets.ISO_8859_1);
+	}
+
+	/** @return the next token parsed as an integer */
+	public long nextLong() throws IOException {
+		readToken();
+		int p = 0;
+		boolean negative = false;
+		if (m_tokenLength > 0 && (m_token[0] == '-' || m_token[0] == '+')) {
+			negative = (m_token[0] == '-');
+			p++;
+		}
+		if (p == m_tokenLength || m_tokenLength - p > 18) {
+			return parseLongSlow();
+		}
+		long value = 0;
+		for (; p < m_tokenLength; p++) {
+			int digit = m_token[p] - '0';
+			if (digit < 0 || digit > 9) {
+				return parseLongSlow();
+			}
+			value = 10 * value + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/** @return the current token parsed by Long.parseLong */
+	private long parseLongSlow() throws IOException {
+		String token = new String(m_token, 0, m_tokenLength, StandardCharsets.ISO_8859_1);
+		try {
+			return Long.parseLong(token);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid integer: " + token);
+		}
+	}
+
+	/** @return the next token parsed as a decimal number */
+	public double nextDouble() throws IOException {
+		readToken();
+		int p = 0;
+		boolean negative = false;
+		if (m_tokenLength > 0 && (m_token[0] == '-' || m_token[0] == '+')) {
+			negative = (m_token[0] == '-');
+			p++;
+		}
+		long mantissa = 0;
+		int nbDigits = 0;
+		int exponent = 0;
+		boolean hasDigit = false;
+		// integer part
+		for (; p < m_tokenLength && m_token[p] >= '0' && m_token[p] <= '9'; p++) {
+			hasDigit = true;
+			if (mantissa != 0 || m_token[p] != '0') {
+				if (nbDigits == 15) {
+					return parseDoubleSlow();
+				}
+				mantissa = 10 * mantissa + (m_token[p] - '0');
+				nbDigits++;
+			}
+		}
+		// fraction
+		if (p < m_tokenLength && m_token[p] == '.') {
+			p++;
+			for (; p < m_tokenLength && m_token[p] >= '0' && m_token[p] <= '9'; p++) {
+				hasDigit = true;
+				if (mantissa != 0 || m_token[p] != '0') {
+					if (nbDigits == 15) {
+						return parseDoubleSlow();
+					}
+					mantissa = 10 * mantissa + (m_token[p] - '0');
+					nbDigits++;
+				}
+				exponent--;
+			}
+		}
+		if (!hasDigit) {
+			return parseDoubleSlow();
+		}
+		// exponent
+		if (p < m_tokenLength && (m_token[p] == 'e' || m_token[p] == 'E')) {
+			p++;
+			boolean negativeExponent = false;
+			if (p < m_tokenLength && (m_token[p] == '-' || m_token[p] == '+')) {
+				negativeExponent = (m_token[p] == '-');
+				p++;
+			}
+			if (p == m_tokenLength || m_tokenLength - p > 4) {
+				return parseDoubleSlow();
+			}
+			int e = 0;
+			for (; p < m_tokenLength; p++) {
+				int digit = m_token[p] - '0';
+				if (digit < 0 || digit > 9) {
+					return parseDoubleSlow();
+				}
+				e = 10 * e + digit;
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (p != m_tokenLength) {
+			return parseDoubleSlow();
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return parseDoubleSlow();
+		}
+		return negative ? -value : value;
+	}
+
+	/** @return the current token parsed by Double.parseDouble */
+	private double parseDoubleSlow() throws IOException {
+		String token = new String(m_token, 0, m_tokenLength, StandardCharsets.ISO_8859_1);
+		try {
+			return Double.parseDouble(token);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid number: " + token);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_channel.close();
+	}
+}
@@ -0,0 +1,341 @@
+package tsp.metaheuristic;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * This is the abstract class for the local searches driven by the candidate
+ * lists of the instance and by don't-look bits.
+ *
+ * The cities to examine are kept in a queue, a city being in the queue when
+ * its don't-look bit is off. A city is removed from the queue when no
+ * improving move starting from it is found by {@link #improve(ATour, int)},
+ * and the end points of every applied move are put back in the queue. After
+ * a local optimum has been reached, a perturbation only needs to activate
+ * the cities whose edges it changed: the next call to
+ * {@link #optimize(ATour)} then costs time proportional to the size of the
+ * perturbation rather than to the size of the tour.
+ *
+ * This class also provides the neighbor list 2-opt and Or-opt moves, that
+ * the subclasses combine in {@link #improve(ATour, int)}.
+ *
+ * @version 2017
+ */
+abstract public class ALocalSearch extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Maximum length of the segments moved by Or-opt. */
+	private static final int OR_OPT_MAX_LENGTH = 3;
+
+	/** Number of cities in the problem. */
+	protected int m_nbCities;
+
+	/** Number of candidates per city. */
+	protected int m_nbCandidates;
+
+	/** Candidate lists of the instance. */
+	protected int[] m_candidates;
+
+	/** Circular queue of the active cities. */
+	private int[] m_queue;
+
+	/** Index of the first city in m_queue. */
+	private int m_queueHead;
+
+	/** Number of cities in m_queue. */
+	private int m_queueSize;
+
+	/** m_active[c] is `true` if c is in the queue (don't-look bit off). */
+	private boolean[] m_active;
+
+	/** Tour used by {@link #solve(Solution)}. */
+	private ATour m_tour;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param name the name of the local search
+	 */
+	public ALocalSearch(Instance instance, String name) throws Exception {
+		super(instance, name);
+		m_nbCities = instance.getNbCities();
+		m_nbCandidates = instance.getNbCandidates();
+		m_candidates = instance.getCandidates();
+		m_queue = new int[m_nbCities];
+		m_active = new boolean[m_nbCities];
+		m_tour = ATour.create(m_nbCities);
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Look for an improving move starting from city a and apply it. The end
+	 * points of the applied move must be activated.
+	 *
+	 * @param tour the tour to improve
+	 * @param a the city to examine
+	 * @return the variation of the tour length, 0 if no move was applied
+	 */
+	protected abstract long improve(ATour tour, int a);
+
+	/**
+	 * Apply improving moves on sol until a local optimum is reached.
+	 * The solution is modified and returned, its objective value is updated.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		m_tour.setTour(sol);
+		long cost = length(m_tour);
+		activateAll(m_tour);
+		cost += optimize(m_tour);
+		m_tour.toSolution(sol);
+		sol.setObjectiveValue(cost);
+		return sol;
+	}
+
+	/**
+	 * Apply improving moves starting from the active cities until the queue
+	 * is empty or the deadline is reached (the remaining cities then stay
+	 * active).
+	 *
+	 * @param tour the tour to improve
+	 * @return the variation of the tour length (negative or zero)
+	 */
+	public long optimize(ATour tour) {
+		long total = 0;
+		int count = 0;
+		while (m_queueSize > 0) {
+			if ((++count & 255) == 0 && m_deadline != Long.MAX_VALUE && isTimeUp()) {
+				break;
+			}
+			int a = m_queue[m_queueHead];
+			m_queueHead = (m_queueHead + 1 == m_nbCities) ? 0 : m_queueHead + 1;
+			m_queueSize--;
+			m_active[a] = false;
+			total += improve(tour, a);
+		}
+		return total;
+	}
+
+	/**
+	 * Look for an improving 2-opt move adding an edge between a and one of its
+	 * candidates, and apply the first one found.
+	 * @return the variation of the tour length, 0 if no move was applied
+	 */
+	protected long improve2Opt(ATour tour, int a) {
+		int base = a * m_nbCandidates;
+		for (int dir = 0; dir < 2; dir++) {
+			boolean forward = (dir == 0);
+			int b = forward ? tour.next(a) : tour.prev(a);
+			long dab = m_instance.getDistancesUnchecked(a, b);
+			for (int r = 0; r < m_nbCandidates; r++) {
+				int c = m_candidates[base + r];
+				long dac = m_instance.getDistancesUnchecked(a, c);
+				if (dac >= dab) {
+					break;
+				}
+				int d = forward ? tour.next(c) : tour.prev(c);
+				if (c == b || d == a) {
+					continue;
+				}
+				long delta = dac + m_instance.getDistancesUnchecked(b, d)
+						- dab - m_instance.getDistancesUnchecked(c, d);
+				if (delta < 0) {
+					tour.make2OptMove(a, b, c, d);
+					activate(a);
+					activate(b);
+					activate(c);
+					activate(d);
+					return delta;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Look for an improving Or-opt move taking the segment of 1 to 3 cities
+	 * starting at a and inserting it between one of the candidates c of a and
+	 * a neighbor e of c, with a next to c. The first one found is applied.
+	 * @return the variation of the tour length, 0 if no move was applied
+	 */
+	protected long improveOrOpt(ATour tour, int a) {
+		int base = a * m_nbCandidates;
+		for (int dir = 0; dir < 2; dir++) {
+			boolean forward = (dir == 0);
+			// the segment is s1..s2 in the direction dir, between p and nx
+			int s1 = a;
+			int sMid = a;
+			int s2 = a;
+			int p = forward ? tour.prev(a) : tour.next(a);
+			for (int length = 1; length <= OR_OPT_MAX_LENGTH; length++) {
+				if (m_nbCities < length + 5) {
+					break;
+				}
+				if (length > 1) {
+					sMid = (length == 2) ? s1 : s2;
+					s2 = forward ? tour.next(s2) : tour.prev(s2);
+				}
+				int nx = forward ? tour.next(s2) : tour.prev(s2);
+				long removeGain = m_instance.getDistancesUnchecked(p, s1)
+						+ m_instance.getDistancesUnchecked(s2, nx)
+						- m_instance.getDistancesUnchecked(p, nx);
+				if (removeGain <= 0) {
+					continue;
+				}
+				for (int r = 0; r < m_nbCandidates; r++) {
+					int c = m_candidates[base + r];
+					long dcs = m_instance.getDistancesUnchecked(c, s1);
+					if (dcs >= removeGain) {
+						break;
+					}
+					if (c == p || c == nx || c == s1 || c == sMid || c == s2) {
+						continue;
+					}
+					for (int side = 0; side < 2; side++) {
+						int e = (side == 0) ? tour.next(c) : tour.prev(c);
+						if (e == p || e == nx || e == s1 || e == sMid || e == s2) {
+							continue;
+						}
+						long delta = dcs + m_instance.getDistancesUnchecked(s2, e)
+								- m_instance.getDistancesUnchecked(c, e) - removeGain;
+						if (delta < 0) {
+							boolean eAfterC = forward ? (side == 0) : (side == 1);
+							moveSegment(tour, p, s1, s2, nx, c, e, eAfterC);
+							activate(p);
+							activate(nx);
+							activate(s1);
+							activate(s2);
+							activate(c);
+							activate(e);
+							return delta;
+						}
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Move the segment s1..s2 (going from p to nx) between c and e, so that s1
+	 * is next to c and s2 next to e. The move is written as 2-opt moves.
+	 *
+	 * @param eAfterC `true` if e follows c in the direction going from s1 to s2
+	 */
+	public static void moveSegment(ATour tour, int p, int s1, int s2, int nx, int c, int e, boolean eAfterC) {
+		if (eAfterC) {
+			// p s1..s2 nx .. c e  ->  p c .. nx s2..s1 e  ->  p nx .. c s2..s1 e  ->  p nx .. c s1..s2 e
+			tour.make2OptMove(p, s1, c, e);
+			tour.make2OptMove(p, c, nx, s2);
+			tour.make2OptMove(c, s2, s1, e);
+		} else {
+			// p s1..s2 nx .. e c  ->  p s1..s2 e .. nx c  ->  p nx .. e s2..s1 c
+			tour.make2OptMove(nx, s2, c, e);
+			tour.make2OptMove(nx, c, p, s1);
+		}
+	}
+
+	/**
+	 * Exchange the cities u and v in the tour, with 2-opt moves only (so that
+	 * the exchange is recorded by the journal of the tour), and activate the
+	 * cities whose edges changed.
+	 *
+	 * @param tour a tour of at least 4 cities
+	 * @param u a city
+	 * @param v a city other than u
+	 * @return the variation of the tour length
+	 */
+	public long swapCities(ATour tour, int u, int v) {
+		if (tour.next(v) == u || tour.next(tour.next(v)) == u) {
+			int w = u;
+			u = v;
+			v = w;
+		}
+		int pu = tour.prev(u);
+		int nu = tour.next(u);
+		int pv = tour.prev(v);
+		int nv = tour.next(v);
+		long delta;
+		if (nu == v || nu == pv) {
+			// pu u [x] v nv  ->  pu v [x] u nv : reversal of u..v
+			delta = m_instance.getDistancesUnchecked(pu, v) + m_instance.getDistancesUnchecked(u, nv)
+					- m_instance.getDistancesUnchecked(pu, u) - m_instance.getDistancesUnchecked(v, nv);
+			tour.make2OptMove(pu, u, v, nv);
+		} else {
+			delta = m_instance.getDistancesUnchecked(pu, v) + m_instance.getDistancesUnchecked(v, nu)
+					+ m_instance.getDistancesUnchecked(pv, u) + m_instance.getDistancesUnchecked(u, nv)
+					- m_instance.getDistancesUnchecked(pu, u) - m_instance.getDistancesUnchecked(u, nu)
+					- m_instance.getDistancesUnchecked(pv, v) - m_instance.getDistancesUnchecked(v, nv);
+			// u is moved between pv and v, then v between pu and nu
+			moveSegment(tour, pu, u, u, nu, pv, v, true);
+			boolean forward = (tour.next(v) == nv);
+			moveSegment(tour, u, v, v, nv, pu, nu, forward == (tour.next(pu) == nu));
+		}
+		activate(u);
+		activate(v);
+		activate(pu);
+		activate(nu);
+		activate(pv);
+		activate(nv);
+		return delta;
+	}
+
+	/** Put city c in the queue of the cities to examine (don't-look bit off). */
+	public void activate(int c) {
+		if (!m_active[c]) {
+			m_active[c] = true;
+			int tail = m_queueHead + m_queueSize;
+			m_queue[(tail >= m_nbCities) ? tail - m_nbCities : tail] = c;
+			m_queueSize++;
+		}
+	}
+
+	/** Put every city in the queue, in the order of the tour. */
+	public void activateAll(ATour tour) {
+		int c = 0;
+		for (int p = 0; p < m_nbCities; p++) {
+			activate(c);
+			c = tour.next(c);
+		}
+	}
+
+	/** Empty the queue (every don't-look bit on). */
+	public void clear() {
+		while (m_queueSize > 0) {
+			m_active[m_queue[m_queueHead]] = false;
+			m_queueHead = (m_queueHead + 1 == m_nbCities) ? 0 : m_queueHead + 1;
+			m_queueSize--;
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the tour used by {@link #solve(Solution)} */
+	public ATour getTour() {
+		return m_tour;
+	}
+
+	/**
+	 * Sets the tour representation used by {@link #solve(Solution)}.
+	 * @param tour an empty tour of the size of the instance
+	 */
+	public void setTour(ATour tour) {
+		m_tour = tour;
+	}
+}
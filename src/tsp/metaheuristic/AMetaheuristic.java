@@ -2,6 +2,7 @@ package tsp.metaheuristic;
 
 import tsp.Instance;
 import tsp.Solution;
+import tsp.tour.ATour;
 
 /**
  * This is the abstract class for Metaheuristic
@@ -21,6 +22,12 @@ abstract public class AMetaheuristic {
 	/** The name of the metaheuristic */
 	protected String m_name;
 
+	/** Date (System.currentTimeMillis()) at which the metaheuristic should return, Long.MAX_VALUE if none */
+	protected long m_deadline;
+
+	/** The cities of the tour measured by {@link #length(ATour)}, allocated on its first call */
+	private int[] m_lengthCities;
+
 	
 	// -----------------------------
 	// ----- CONSTRUCTOR -----------
@@ -34,6 +41,7 @@ abstract public class AMetaheuristic {
 	public AMetaheuristic(Instance instance, String name) throws Exception {
 		m_instance = instance;
 		m_name = name;
+		m_deadline = Long.MAX_VALUE;
 	}
 
 
@@ -44,6 +52,21 @@ abstract public class AMetaheuristic {
 	/** Apply the metaheuristic on a solution to get a local optimum solution */
 	public abstract Solution solve(Solution sol) throws Exception;
 
+	/** @return `true` if the deadline is reached */
+	protected boolean isTimeUp() {
+		return System.currentTimeMillis() >= m_deadline;
+	}
+
+	/** @return the length of tour */
+	public long length(ATour tour) {
+		int n = m_instance.getNbCities();
+		if (m_lengthCities == null) {
+			m_lengthCities = new int[n];
+		}
+		tour.toArray(m_lengthCities);
+		return m_instance.getTourLengthUnchecked(m_lengthCities, n);
+	}
+
 
 	// -----------------------------
 	// ----- GETTERS / SETTERS -----
@@ -54,4 +77,19 @@ abstract public class AMetaheuristic {
 	{
 		return m_name;
 	}
+
+	/** Get the date (System.currentTimeMillis()) at which the metaheuristic should return */
+	public long getDeadline()
+	{
+		return m_deadline;
+	}
+
+	/**
+	 * Sets the date at which the metaheuristic should return with the best solution found.
+	 * @param deadline a date given by System.currentTimeMillis(), Long.MAX_VALUE for no deadline
+	 */
+	public void setDeadline(long deadline)
+	{
+		m_deadline = deadline;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package tsp.metaheuristic;
+
+import tsp.Instance;
+import tsp.tour.ATour;
+
+/**
+ * First improvement 2-opt and Or-opt local search driven by the candidate
+ * lists of the instance and by don't-look bits (see {@link ALocalSearch}).
+ *
+ * For a city a, the 2-opt moves tried are those adding an edge (a,c) with c
+ * a candidate of a, and the Or-opt moves are those moving a segment of 1 to
+ * 3 cities starting at a next to one of the candidates of a. Candidates are
+ * sorted by distance, so the scan stops as soon as the new edge is longer
+ * than the edge it would replace.
+ *
+ * @version 2017
+ */
+public class DontLookBitsSearch extends ALocalSearch {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** `true` if the Or-opt moves are tried after the 2-opt moves. */
+	private boolean m_orOpt;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public DontLookBitsSearch(Instance instance) throws Exception {
+		super(instance, "2-opt/Or-opt with don't-look bits");
+		m_orOpt = true;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	protected long improve(ATour tour, int a) {
+		long delta = improve2Opt(tour, a);
+		if (delta == 0 && m_orOpt) {
+			delta = improveOrOpt(tour, a);
+		}
+		return delta;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @param orOpt `true` to try the Or-opt moves, `false` for 2-opt only */
+	public void setOrOpt(boolean orOpt) {
+		m_orOpt = orOpt;
+	}
+}
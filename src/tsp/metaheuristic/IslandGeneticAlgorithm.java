@@ -0,0 +1,455 @@
+package tsp.metaheuristic;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * Island model memetic algorithm.
+ *
+ * Each island is a population evolved by its own thread. At each
+ * generation, an island selects two parents by binary tournaments, builds a
+ * child by order crossover (OX: a segment of the first parent is kept at
+ * its positions, the other cities are taken in the order of the second
+ * parent) and repairs it with a local search (see {@link ALocalSearch}).
+ * The repaired child is then merged with the better parent by partition
+ * crossover (see {@link PartitionCrossover}), which keeps the best paths of
+ * both where they differ. The island replaces its worst tour by the child
+ * if the child is shorter and has not the length of a tour already in the
+ * population.
+ *
+ * Every given number of generations, each island sends a copy of its best
+ * tour to the next island of a ring, which inserts it as a child. The best
+ * tour of all the islands is kept in a shared incumbent, written into the
+ * solution given to {@link #solve(Solution)} at the deadline.
+ *
+ * The tours of an island, its child and its migrant are preallocated
+ * arrays: the population is updated by swapping the arrays, so that no
+ * array is allocated during the search.
+ *
+ * @version 2017
+ */
+public class IslandGeneticAlgorithm extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Default number of tours per island. */
+	public static final int DEFAULT_POPULATION_SIZE = 20;
+
+	/** Default number of generations between two migrations. */
+	public static final int DEFAULT_MIGRATION_PERIOD = 50;
+
+	/** Creates the local search of each island. */
+	private ParallelMultiStart.LocalSearchFactory m_factory;
+
+	/** Number of islands, each one evolved by a thread. */
+	private int m_nbIslands;
+
+	/** Number of tours per island. */
+	private int m_populationSize;
+
+	/** Number of generations between two migrations. */
+	private int m_migrationPeriod;
+
+	/** Seed of the random generators of the islands. */
+	private long m_seed;
+
+	/** The islands, indexed as the ring of the migrations. */
+	private Island[] m_islands;
+
+	/** Best tour found by the islands (open tour). */
+	private int[] m_bestTour;
+
+	/** Length of m_bestTour, read without lock to filter the publications. */
+	private volatile long m_bestLength;
+
+	/** First error met by an island. */
+	private Exception m_error;
+
+	/** Number of children built by the last call to {@link #solve(Solution)}. */
+	private long m_nbChildren;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param factory creates the local search of each island
+	 * @param nbIslands the number of islands (at least 1), each one evolved
+	 *        by a thread
+	 */
+	public IslandGeneticAlgorithm(Instance instance, ParallelMultiStart.LocalSearchFactory factory, int nbIslands) throws Exception {
+		super(instance, "Island genetic algorithm");
+		if (nbIslands < 1) {
+			throw new Exception("Error IslandGeneticAlgorithm : the number of islands " + nbIslands + " should be at least 1");
+		}
+		m_factory = factory;
+		m_nbIslands = nbIslands;
+		m_populationSize = DEFAULT_POPULATION_SIZE;
+		m_migrationPeriod = DEFAULT_MIGRATION_PERIOD;
+		m_seed = System.nanoTime();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Evolve the islands until the deadline, which must be set. The first
+	 * tour of the first island is sol, the other ones are random tours
+	 * improved by the local search. The best tour found is written in sol
+	 * with its objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error IslandGeneticAlgorithm : a deadline must be set before solve()");
+		}
+		int n = m_instance.getNbCities();
+		m_bestTour = new int[n];
+		sol.copyTourInto(m_bestTour);
+		m_bestLength = Long.MAX_VALUE;
+		m_error = null;
+		m_nbChildren = 0;
+
+		SplittableRandom random = new SplittableRandom(m_seed);
+		m_islands = new Island[m_nbIslands];
+		for (int k = 0; k < m_nbIslands; k++) {
+			m_islands[k] = new Island(k, m_factory.create(m_instance), random.split());
+		}
+		Thread[] threads = new Thread[m_nbIslands];
+		for (int k = 0; k < m_nbIslands; k++) {
+			threads[k] = new Thread(m_islands[k], "tsp-island-" + k);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (m_error != null) {
+			throw m_error;
+		}
+		for (Island island : m_islands) {
+			m_nbChildren += island.m_nbChildren;
+		}
+
+		synchronized (this) {
+			int start = 0;
+			while (m_bestTour[start] != 0) {
+				start++;
+			}
+			sol.setTour(m_bestTour, start);
+			sol.setObjectiveValue(m_bestLength);
+		}
+		return sol;
+	}
+
+	/** Replace the incumbent by tour if it is shorter. */
+	private synchronized void publish(int[] tour, long length) {
+		if (length < m_bestLength) {
+			System.arraycopy(tour, 0, m_bestTour, 0, tour.length);
+			m_bestLength = length;
+		}
+	}
+
+	/** Record the first error met by an island. */
+	private synchronized void fail(Exception e) {
+		if (m_error == null) {
+			m_error = e;
+		}
+	}
+
+	/** A population evolved by one thread. */
+	private class Island implements Runnable {
+
+		/** Index of the island in the ring. */
+		private int m_index;
+
+		/** Local search of the island. */
+		private ALocalSearch m_search;
+
+		/** Random generator of the island. */
+		private SplittableRandom m_random;
+
+		/** Tour optimized by m_search. */
+		private ATour m_tour;
+
+		/** The tours of the population (open tours). */
+		private int[][] m_population;
+
+		/** m_lengths[t] is the length of m_population[t]. */
+		private long[] m_lengths;
+
+		/** Buffer of the child. */
+		private int[] m_child;
+
+		/** Buffer of the merge of the child with its better parent. */
+		private int[] m_merged;
+
+		/** Migrant received from the previous island of the ring, written under the lock of the island. */
+		private int[] m_migrant;
+
+		/** Length of m_migrant, Long.MAX_VALUE if no migrant is waiting. */
+		private long m_migrantLength;
+
+		/** Partition crossover of the island. */
+		private PartitionCrossover m_crossover;
+
+		/** m_stamp[c] == m_currentStamp if city c is already in the child. */
+		private int[] m_stamp;
+
+		/** Stamp of the current crossover. */
+		private int m_currentStamp;
+
+		/** Number of children built. */
+		private long m_nbChildren;
+
+		/**
+		 * @param index the index of the island in the ring, the first tour of
+		 *        island 0 being the incumbent
+		 * @param search the local search of the island
+		 * @param random the random generator of the island
+		 */
+		Island(int index, ALocalSearch search, SplittableRandom random) {
+			int n = m_instance.getNbCities();
+			m_index = index;
+			m_search = search;
+			m_search.setDeadline(m_deadline);
+			m_random = random;
+			m_tour = ATour.create(n);
+			m_population = new int[m_populationSize][n];
+			m_lengths = new long[m_populationSize];
+			m_child = new int[n];
+			m_merged = new int[n];
+			m_migrant = new int[n];
+			m_migrantLength = Long.MAX_VALUE;
+			m_stamp = new int[n];
+			m_crossover = new PartitionCrossover(m_instance);
+			if (index == 0) {
+				System.arraycopy(m_bestTour, 0, m_population[0], 0, n);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				int n = m_instance.getNbCities();
+				for (int t = 0; t < m_populationSize && !isTimeUp(); t++) {
+					if (t > 0 || m_index > 0) {
+						randomTour(m_population[t]);
+					}
+					m_lengths[t] = improve(m_population[t]);
+				}
+				if (n < 8) {
+					return;
+				}
+				long generation = 0;
+				while (!isTimeUp()) {
+					generation++;
+					int first = tournament();
+					int second = tournament();
+					if (first == second) {
+						continue;
+					}
+					// the better parent first
+					if (m_lengths[second] < m_lengths[first]) {
+						int t = first;
+						first = second;
+						second = t;
+					}
+					orderCrossover(m_population[first], m_population[second], m_child);
+					m_nbChildren++;
+					insert(merge(improve(m_child), m_population[first], m_lengths[first]));
+
+					receiveMigrant();
+					if (generation % m_migrationPeriod == 0 && m_nbIslands > 1) {
+						int best = 0;
+						for (int t = 1; t < m_populationSize; t++) {
+							if (m_lengths[t] < m_lengths[best]) {
+								best = t;
+							}
+						}
+						m_islands[(m_index + 1) % m_nbIslands].sendMigrant(m_population[best], m_lengths[best]);
+					}
+				}
+			} catch (Exception e) {
+				fail(e);
+			}
+		}
+
+		/**
+		 * Improve tour with the local search, and publish it if it is better
+		 * than the incumbent.
+		 * @return the length of the improved tour
+		 */
+		private long improve(int[] tour) {
+			m_tour.setTour(tour);
+			m_search.clear();
+			m_search.activateAll(m_tour);
+			long length = m_search.length(m_tour) + m_search.optimize(m_tour);
+			m_tour.toArray(tour);
+			if (length < m_bestLength) {
+				publish(tour, length);
+			}
+			return length;
+		}
+
+		/**
+		 * Merge the child with a parent, the shorter one being given first to the
+		 * partition crossover. The child is replaced by the merge if it is
+		 * shorter (the buffers are swapped), and published if it is better
+		 * than the incumbent.
+		 * @param length the length of the child
+		 * @param parent the parent
+		 * @param parentLength the length of the parent
+		 * @return the length of the child
+		 */
+		private long merge(long length, int[] parent, long parentLength) {
+			long merged = (length <= parentLength) ? m_crossover.merge(m_child, parent, m_merged)
+					: m_crossover.merge(parent, m_child, m_merged);
+			if (merged < length) {
+				int[] child = m_child;
+				m_child = m_merged;
+				m_merged = child;
+				if (merged < m_bestLength) {
+					publish(m_child, merged);
+				}
+				return merged;
+			}
+			return length;
+		}
+
+		/**
+		 * Replace the worst tour of the population by the child if the child is
+		 * shorter and its length is not in the population (the buffers are swapped).
+		 */
+		private void insert(long length) {
+			int worst = 0;
+			for (int t = 0; t < m_populationSize; t++) {
+				if (m_lengths[t] == length) {
+					return;
+				}
+				if (m_lengths[t] > m_lengths[worst]) {
+					worst = t;
+				}
+			}
+			if (length < m_lengths[worst]) {
+				int[] replaced = m_population[worst];
+				m_population[worst] = m_child;
+				m_lengths[worst] = length;
+				m_child = replaced;
+			}
+		}
+
+		/** @return the index of the shorter of two random tours of the population */
+		private int tournament() {
+			int a = m_random.nextInt(m_populationSize);
+			int b = m_random.nextInt(m_populationSize);
+			return (m_lengths[a] <= m_lengths[b]) ? a : b;
+		}
+
+		/**
+		 * Order crossover: the cities of a random segment of first are kept at
+		 * their positions, the other positions are filled with the other
+		 * cities in the order of second, starting after the segment.
+		 */
+		private void orderCrossover(int[] first, int[] second, int[] child) {
+			int n = first.length;
+			int i = m_random.nextInt(n);
+			int length = 1 + m_random.nextInt(n - 1);
+			if (++m_currentStamp == 0) {
+				Arrays.fill(m_stamp, 0);
+				m_currentStamp = 1;
+			}
+			for (int k = 0; k < length; k++) {
+				int p = (i + k < n) ? i + k : i + k - n;
+				child[p] = first[p];
+				m_stamp[first[p]] = m_currentStamp;
+			}
+			int p = (i + length < n) ? i + length : i + length - n;
+			for (int k = 0; k < n; k++) {
+				int q = (i + length + k) % n;
+				int c = second[q];
+				if (m_stamp[c] != m_currentStamp) {
+					child[p] = c;
+					p = (p + 1 == n) ? 0 : p + 1;
+				}
+			}
+		}
+
+		/** Store a copy of tour as the migrant of this island, if it is better than the waiting one. */
+		synchronized void sendMigrant(int[] tour, long length) {
+			if (length < m_migrantLength) {
+				System.arraycopy(tour, 0, m_migrant, 0, tour.length);
+				m_migrantLength = length;
+			}
+		}
+
+		/** Insert the waiting migrant in the population, as a child. */
+		private void receiveMigrant() {
+			long length;
+			synchronized (this) {
+				length = m_migrantLength;
+				if (length == Long.MAX_VALUE) {
+					return;
+				}
+				System.arraycopy(m_migrant, 0, m_child, 0, m_child.length);
+				m_migrantLength = Long.MAX_VALUE;
+			}
+			insert(length);
+		}
+
+		/** Fill tour with a random permutation of the cities. */
+		private void randomTour(int[] tour) {
+			for (int p = 0; p < tour.length; p++) {
+				int q = m_random.nextInt(p + 1);
+				tour[p] = tour[q];
+				tour[q] = p;
+			}
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of children built by the last call to {@link #solve(Solution)} */
+	public long getNbChildren() {
+		return m_nbChildren;
+	}
+
+	/**
+	 * Sets the number of tours per island.
+	 * @param populationSize the number of tours (at least 2)
+	 */
+	public void setPopulationSize(int populationSize) {
+		m_populationSize = Math.max(2, populationSize);
+	}
+
+	/**
+	 * Sets the number of generations between two migrations.
+	 * @param migrationPeriod the number of generations (at least 1)
+	 */
+	public void setMigrationPeriod(int migrationPeriod) {
+		m_migrationPeriod = Math.max(1, migrationPeriod);
+	}
+
+	/**
+	 * Sets the seed of the random generators of the islands.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_seed = seed;
+	}
+}
@@ -0,0 +1,245 @@
+package tsp.metaheuristic;
+
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * Iterated local search with segment-local double-bridge kicks.
+ *
+ * The kick cuts three edges of the tour inside a window of a few dozen
+ * consecutive cities starting at a random city, and reconnects the two
+ * middle segments in the other order (A B C D becomes A C B D). Only the six
+ * end points of the kick are activated, so the local search (see
+ * {@link ALocalSearch}) re-optimizes the neighborhood of the kick instead
+ * of the whole tour, and the kick and its re-optimization are undone through
+ * the journal of the tour (see {@link ATour#rollback()}) when the new tour
+ * is rejected.
+ *
+ * The acceptance criterion is one of:
+ * 	- {@link Acceptance#BETTER} : the new tour must be strictly shorter
+ * 	- {@link Acceptance#BETTER_OR_EQUAL} : the new tour must not be longer
+ * 	- {@link Acceptance#RESTART} : as BETTER_OR_EQUAL, and the search restarts
+ * 	  from a random tour after a given number of kicks without improvement of
+ * 	  the best tour
+ *
+ * @version 2017
+ */
+public class IteratedLocalSearch extends AMetaheuristic {
+
+	/** Acceptance criteria of the tour obtained after a kick. */
+	public enum Acceptance {
+		BETTER, BETTER_OR_EQUAL, RESTART
+	}
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Default number of cities of the window in which the kick is done. */
+	public static final int DEFAULT_SEGMENT_LENGTH = 50;
+
+	/** Default number of kicks without improvement before a restart (RESTART only). */
+	public static final int DEFAULT_MAX_STAGNATION = 50000;
+
+	/** Local search applied after each kick. */
+	private ALocalSearch m_search;
+
+	/** Acceptance criterion. */
+	private Acceptance m_acceptance;
+
+	/** Number of cities of the window in which the kick is done. */
+	private int m_segmentLength;
+
+	/** Number of kicks without improvement before a restart. */
+	private int m_maxStagnation;
+
+	/** Random generator. */
+	private SplittableRandom m_random;
+
+	/** Number of kicks done by the last call to {@link #solve(Solution)}. */
+	private long m_nbKicks;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param search the local search applied after each kick
+	 */
+	public IteratedLocalSearch(Instance instance, ALocalSearch search) throws Exception {
+		super(instance, "Iterated local search (" + search.getName() + ")");
+		m_search = search;
+		m_acceptance = Acceptance.BETTER_OR_EQUAL;
+		m_segmentLength = DEFAULT_SEGMENT_LENGTH;
+		m_maxStagnation = DEFAULT_MAX_STAGNATION;
+		m_random = new SplittableRandom();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Optimize sol, then kick and re-optimize until the deadline, which must
+	 * be set. The best tour found is written in sol with its objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error IteratedLocalSearch : a deadline must be set before solve()");
+		}
+		int n = m_instance.getNbCities();
+		m_search.setDeadline(m_deadline);
+		m_nbKicks = 0;
+		ATour tour = ATour.create(n);
+		tour.setTour(sol);
+		long current = descent(tour);
+		long best = current;
+		int[] bestTour = new int[n];
+		tour.toArray(bestTour);
+
+		if (n >= 8) {
+			long stagnation = 0;
+			tour.startJournal();
+			while (!isTimeUp()) {
+				long length = current + kick(tour);
+				length += m_search.optimize(tour);
+				m_nbKicks++;
+
+				boolean accepted = (m_acceptance == Acceptance.BETTER) ? length < current : length <= current;
+				if (accepted) {
+					tour.commit();
+					current = length;
+				} else {
+					tour.rollback();
+				}
+				if (current < best) {
+					best = current;
+					tour.toArray(bestTour);
+					stagnation = 0;
+				} else if (m_acceptance == Acceptance.RESTART && ++stagnation >= m_maxStagnation) {
+					randomTour(bestTour.length, tour);
+					current = descent(tour);
+					tour.startJournal();
+					stagnation = 0;
+					if (current < best) {
+						best = current;
+						tour.toArray(bestTour);
+					}
+				}
+			}
+			tour.stopJournal();
+		}
+
+		sol.setTour(bestTour);
+		sol.setObjectiveValue(best);
+		return sol;
+	}
+
+	/** @return the length of tour after a local search from all the cities */
+	private long descent(ATour tour) {
+		m_search.clear();
+		m_search.activateAll(tour);
+		return m_search.length(tour) + m_search.optimize(tour);
+	}
+
+	/**
+	 * Apply a double-bridge kick inside a window of the tour and activate its
+	 * end points.
+	 * @return the variation of the tour length
+	 */
+	private long kick(ATour tour) {
+		int n = tour.size();
+		int window = Math.min(m_segmentLength, n - 2);
+		// offsets 0 < o1 < o2 <= window of a2 and a3 from a1
+		int o1 = 1 + m_random.nextInt(window - 1);
+		int o2 = o1 + 1 + m_random.nextInt(window - o1);
+		int a1 = m_random.nextInt(n);
+		int b1 = tour.next(a1);
+		int a2 = a1;
+		for (int o = 0; o < o1; o++) {
+			a2 = tour.next(a2);
+		}
+		int b2 = tour.next(a2);
+		int a3 = a2;
+		for (int o = o1; o < o2; o++) {
+			a3 = tour.next(a3);
+		}
+		int b3 = tour.next(a3);
+
+		long delta = m_instance.getDistancesUnchecked(a1, b2) + m_instance.getDistancesUnchecked(a3, b1)
+				+ m_instance.getDistancesUnchecked(a2, b3) - m_instance.getDistancesUnchecked(a1, b1)
+				- m_instance.getDistancesUnchecked(a2, b2) - m_instance.getDistancesUnchecked(a3, b3);
+		// A B C D -> A B^r C D -> A B^r C^r D -> A C B D
+		tour.make2OptMove(a1, b1, a2, b2);
+		tour.make2OptMove(b1, b2, a3, b3);
+		tour.make2OptMove(a1, a2, b2, b3);
+
+		m_search.activate(a1);
+		m_search.activate(b1);
+		m_search.activate(a2);
+		m_search.activate(b2);
+		m_search.activate(a3);
+		m_search.activate(b3);
+		return delta;
+	}
+
+	/** Set tour to a random permutation of the n cities. */
+	private void randomTour(int n, ATour tour) {
+		int[] cities = new int[n];
+		for (int p = 0; p < n; p++) {
+			int q = m_random.nextInt(p + 1);
+			cities[p] = cities[q];
+			cities[q] = p;
+		}
+		tour.stopJournal();
+		tour.setTour(cities);
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of kicks done by the last call to {@link #solve(Solution)} */
+	public long getNbKicks() {
+		return m_nbKicks;
+	}
+
+	/** @param acceptance the acceptance criterion of the tour obtained after a kick */
+	public void setAcceptance(Acceptance acceptance) {
+		m_acceptance = acceptance;
+	}
+
+	/**
+	 * Sets the number of cities of the window in which the kicks are done.
+	 * @param segmentLength the number of cities (at least 3)
+	 */
+	public void setSegmentLength(int segmentLength) {
+		m_segmentLength = Math.max(3, segmentLength);
+	}
+
+	/**
+	 * Sets the number of kicks without improvement of the best tour after
+	 * which the search restarts from a random tour (RESTART acceptance only).
+	 * @param maxStagnation the number of kicks (at least 1)
+	 */
+	public void setMaxStagnation(int maxStagnation) {
+		m_maxStagnation = Math.max(1, maxStagnation);
+	}
+
+	/**
+	 * Sets the seed of the random generator.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_random = new SplittableRandom(seed);
+	}
+}
@@ -0,0 +1,245 @@
+package tsp.metaheuristic;
+
+import tsp.Instance;
+import tsp.tour.ATour;
+
+/**
+ * Lin-Kernighan variable depth local search.
+ *
+ * From a base city t1 and one of its tour neighbors t2, the search builds a
+ * sequential chain of exchanges: the edge (t1,t2) is removed, an edge
+ * (t2,t3) to a candidate t3 of t2 is added, and the edge (t3,t4) is removed
+ * where t4 is the neighbor of t3 for which closing the tour with (t4,t1)
+ * gives a tour. Each step is applied on the tour as a 2-opt move, and the
+ * chain goes on from (t1,t4) as long as the partial gain stays positive.
+ * The chain is accepted as soon as closing it shortens the tour, and undone
+ * otherwise.
+ *
+ * As in the implementations of Johnson and McGeoch or LKH, the first levels
+ * of the chain try several alternatives (by default 5, then 3), ranked by
+ * d(t3,t4) - d(t2,t3), before falling back to a greedy choice; edges added in
+ * the chain are never removed again. Chains of depth 5 and more thus
+ * explore the sequential 5-opt moves reachable from the base city and far
+ * deeper ones when they keep improving.
+ *
+ * When no chain improves from t1, the Or-opt moves of {@link ALocalSearch}
+ * are tried, since the segment insertions without reversal are not reachable
+ * by the chains. Base cities are taken from the don't-look bits queue.
+ *
+ * @version 2017
+ */
+public class LinKernighan extends ALocalSearch {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Default number of alternatives tried at the first levels of the chain. */
+	private static final int[] DEFAULT_BREADTH = {5, 3};
+
+	/** Default maximum number of steps of a chain. */
+	private static final int DEFAULT_MAX_DEPTH = 50;
+
+	/** m_breadth[l] is the number of alternatives tried at level l, 1 beyond. */
+	private int[] m_breadth;
+
+	/** Maximum number of steps of a chain. */
+	private int m_maxDepth;
+
+	/** Base city of the current chain. */
+	private int m_t1;
+
+	/** Edges added in the current chain: (m_addedFrom[l], m_addedTo[l]). */
+	private int[] m_addedFrom;
+
+	/** Edges added in the current chain: (m_addedFrom[l], m_addedTo[l]). */
+	private int[] m_addedTo;
+
+	/** t3 of the alternatives of each level: m_altT3[level][r]. */
+	private int[][] m_altT3;
+
+	/** t4 of the alternatives of each level. */
+	private int[][] m_altT4;
+
+	/** Score of the alternatives of each level. */
+	private long[][] m_altScore;
+
+	/** Cities touched by the accepted chain, activated once it is accepted. */
+	private int[] m_touched;
+
+	/** Number of cities in m_touched. */
+	private int m_nbTouched;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public LinKernighan(Instance instance) throws Exception {
+		super(instance, "Lin-Kernighan");
+		m_breadth = DEFAULT_BREADTH;
+		setMaxDepth(DEFAULT_MAX_DEPTH);
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	protected long improve(ATour tour, int a) {
+		if (m_nbCities < 5) {
+			return 0;
+		}
+		m_t1 = a;
+		for (int side = 0; side < 2; side++) {
+			int t2 = (side == 0) ? tour.next(a) : tour.prev(a);
+			m_nbTouched = 0;
+			touch(a);
+			touch(t2);
+			long gain = step(tour, 0, t2, m_instance.getDistancesUnchecked(a, t2));
+			if (gain > 0) {
+				for (int i = 0; i < m_nbTouched; i++) {
+					activate(m_touched[i]);
+				}
+				return -gain;
+			}
+		}
+		return improveOrOpt(tour, a);
+	}
+
+	/**
+	 * One step of the chain: the edge (t1,t2) is the last removed edge and
+	 * gain is the sum of the removed edges minus the sum of the added edges
+	 * (not counting the closing edge).
+	 *
+	 * @return the gain of the accepted chain, 0 if no improving chain was found
+	 *         (the tour is then left unchanged).
+	 */
+	private long step(ATour tour, int level, int t2, long gain) {
+		int t1 = m_t1;
+		boolean t2IsNext = (tour.next(t1) == t2);
+		int breadth = (level < m_breadth.length) ? m_breadth[level] : 1;
+		int[] altT3 = m_altT3[level];
+		int[] altT4 = m_altT4[level];
+		long[] altScore = m_altScore[level];
+
+		// alternatives (t3,t4), best scores first
+		int nbAlternatives = 0;
+		int base = t2 * m_nbCandidates;
+		for (int r = 0; r < m_nbCandidates; r++) {
+			int t3 = m_candidates[base + r];
+			long d23 = m_instance.getDistancesUnchecked(t2, t3);
+			if (d23 >= gain) {
+				break;
+			}
+			if (t3 == t1) {
+				continue;
+			}
+			int t4 = t2IsNext ? tour.prev(t3) : tour.next(t3);
+			if (t4 == t2 || isAdded(level, t3, t4)) {
+				continue;
+			}
+			long score = m_instance.getDistancesUnchecked(t3, t4) - d23;
+			// insertion in the sorted array of the best alternatives
+			int i = nbAlternatives;
+			if (i == breadth) {
+				if (score <= altScore[i - 1]) {
+					continue;
+				}
+				i--;
+			} else {
+				nbAlternatives++;
+			}
+			while (i > 0 && altScore[i - 1] < score) {
+				altT3[i] = altT3[i - 1];
+				altT4[i] = altT4[i - 1];
+				altScore[i] = altScore[i - 1];
+				i--;
+			}
+			altT3[i] = t3;
+			altT4[i] = t4;
+			altScore[i] = score;
+		}
+
+		for (int r = 0; r < nbAlternatives; r++) {
+			int t3 = altT3[r];
+			int t4 = altT4[r];
+			long newGain = gain - m_instance.getDistancesUnchecked(t2, t3) + m_instance.getDistancesUnchecked(t3, t4);
+
+			tour.make2OptMove(t1, t2, t4, t3);
+			m_addedFrom[level] = t2;
+			m_addedTo[level] = t3;
+			int touchedBefore = m_nbTouched;
+			touch(t3);
+			touch(t4);
+
+			long closedGain = newGain - m_instance.getDistancesUnchecked(t4, t1);
+			if (closedGain > 0) {
+				return closedGain;
+			}
+			if (level + 1 < m_maxDepth) {
+				long chainGain = step(tour, level + 1, t4, newGain);
+				if (chainGain > 0) {
+					return chainGain;
+				}
+			}
+			tour.make2OptMove(t1, t4, t2, t3);
+			m_nbTouched = touchedBefore;
+		}
+		return 0;
+	}
+
+	/** @return `true` if the edge (a,b) was added in the first levels of the chain */
+	private boolean isAdded(int levels, int a, int b) {
+		for (int l = 0; l < levels; l++) {
+			if ((m_addedFrom[l] == a && m_addedTo[l] == b) || (m_addedFrom[l] == b && m_addedTo[l] == a)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Record that the edges of city c are modified by the current chain. */
+	private void touch(int c) {
+		m_touched[m_nbTouched++] = c;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/**
+	 * Sets the maximum number of steps of a chain.
+	 * @param maxDepth the maximum depth (at least 1)
+	 */
+	public void setMaxDepth(int maxDepth) {
+		m_maxDepth = Math.max(1, maxDepth);
+		m_addedFrom = new int[m_maxDepth];
+		m_addedTo = new int[m_maxDepth];
+		m_touched = new int[2 * m_maxDepth + 2];
+		m_altT3 = new int[m_maxDepth][];
+		m_altT4 = new int[m_maxDepth][];
+		m_altScore = new long[m_maxDepth][];
+		for (int l = 0; l < m_maxDepth; l++) {
+			int breadth = (l < m_breadth.length) ? m_breadth[l] : 1;
+			m_altT3[l] = new int[breadth];
+			m_altT4[l] = new int[breadth];
+			m_altScore[l] = new long[breadth];
+		}
+	}
+
+	/**
+	 * Sets the number of alternatives tried at the first levels of the chain.
+	 * @param breadth breadth[l] alternatives are tried at level l, 1 beyond
+	 */
+	public void setBreadth(int[] breadth) {
+		m_breadth = breadth.clone();
+		setMaxDepth(m_maxDepth);
+	}
+}
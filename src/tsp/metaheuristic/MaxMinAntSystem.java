@@ -0,0 +1,527 @@
+package tsp.metaheuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.spatial.KdTree;
+import tsp.tour.ATour;
+
+/**
+ * MAX-MIN Ant System (Stützle and Hoos).
+ *
+ * At each iteration, every ant builds a tour from a random city: from city
+ * i, it goes to an unvisited candidate j of i (see
+ * {@link Instance#getCandidates()}) with a probability proportional to the
+ * choice information tau(i,j)^alpha * eta(i,j)^beta, where tau is the
+ * pheromone trail and eta = 1 / d(i,j) the heuristic weight. When all the
+ * candidates of i are visited, the ant goes to the nearest unvisited city,
+ * found in a k-d tree of the unvisited cities (see
+ * {@link KdTree#nearestAlive(int)}) or by a scan of the distances for the
+ * EDGE_WEIGHT_SECTION instances. The tours of the ants may then be improved
+ * by a local search.
+ *
+ * Only the best ant deposits pheromone: the best ant of the iteration, and
+ * the best tour found so far every {@link #DEFAULT_GLOBAL_BEST_PERIOD}
+ * iterations. The trails are bounded by tauMax = 1 / (rho * best length) and
+ * tauMin = tauMax * (1 - p^(1/n)) / ((n/2 - 1) * p^(1/n)), and they are reset
+ * to tauMax after a given number of iterations without improvement of the
+ * best tour.
+ *
+ * The trails, the heuristic weights and the choice information are stored
+ * in flat arrays indexed as the candidate lists, so the memory is linear in
+ * the number of cities: the edges out of the candidate lists have no trail.
+ * The choice information is computed once per iteration, before the ants,
+ * which are built in parallel by a pool of threads.
+ *
+ * @version 2017
+ */
+public class MaxMinAntSystem extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Default number of ants. */
+	public static final int DEFAULT_NB_ANTS = 25;
+
+	/** Default weight of the pheromone trails. */
+	public static final double DEFAULT_ALPHA = 1.0;
+
+	/** Default weight of the heuristic information. */
+	public static final double DEFAULT_BETA = 2.0;
+
+	/** Default evaporation rate of the pheromone trails. */
+	public static final double DEFAULT_RHO = 0.02;
+
+	/** Default probability that the best tour is built once the trails have converged (used for tauMin). */
+	public static final double DEFAULT_P_BEST = 0.05;
+
+	/** Default period (in iterations) of the deposits of the best tour found so far. */
+	public static final int DEFAULT_GLOBAL_BEST_PERIOD = 5;
+
+	/** Default number of iterations without improvement before the trails are reset. */
+	public static final int DEFAULT_MAX_STAGNATION = 500;
+
+	/** Number of cities added to a tour between two checks of the deadline (a power of 2). */
+	private static final int TIME_CHECK_PERIOD = 1 << 10;
+
+	/** Creates the local search of each ant, null for no local search. */
+	private ParallelMultiStart.LocalSearchFactory m_factory;
+
+	/** Number of threads building the ants. */
+	private int m_nbThreads;
+
+	/** Number of ants. */
+	private int m_nbAnts;
+
+	/** Weight of the pheromone trails. */
+	private double m_alpha;
+
+	/** Weight of the heuristic information. */
+	private double m_beta;
+
+	/** Evaporation rate of the pheromone trails. */
+	private double m_rho;
+
+	/** Probability used to compute tauMin. */
+	private double m_pBest;
+
+	/** Number of iterations without improvement before the trails are reset. */
+	private int m_maxStagnation;
+
+	/** Seed of the random generators of the ants. */
+	private long m_seed;
+
+	/** Number of candidates per city. */
+	private int m_nbCandidates;
+
+	/** Candidate lists of the instance. */
+	private int[] m_candidates;
+
+	/** m_trails[i*m_nbCandidates + r] is the pheromone trail of the edge from i to its r-th candidate. */
+	private double[] m_trails;
+
+	/** eta^beta of the edge from i to its r-th candidate, at the same index as the trail. */
+	private double[] m_heuristic;
+
+	/** tau^alpha * eta^beta of the edge from i to its r-th candidate, at the same index as the trail. */
+	private double[] m_choiceInfo;
+
+	/** Upper bound of the trails. */
+	private double m_tauMax;
+
+	/** Lower bound of the trails. */
+	private double m_tauMin;
+
+	/** Number of iterations done by the last call to {@link #solve(Solution)}. */
+	private long m_nbIterations;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param factory creates the local search applied to the tour of each
+	 *        ant, null for no local search
+	 * @param nbThreads the number of threads building the ants (at least 1)
+	 */
+	public MaxMinAntSystem(Instance instance, ParallelMultiStart.LocalSearchFactory factory, int nbThreads) throws Exception {
+		super(instance, "MAX-MIN Ant System");
+		if (nbThreads < 1) {
+			throw new Exception("Error MaxMinAntSystem : the number of threads " + nbThreads + " should be at least 1");
+		}
+		m_factory = factory;
+		m_nbThreads = nbThreads;
+		m_nbAnts = DEFAULT_NB_ANTS;
+		m_alpha = DEFAULT_ALPHA;
+		m_beta = DEFAULT_BETA;
+		m_rho = DEFAULT_RHO;
+		m_pBest = DEFAULT_P_BEST;
+		m_maxStagnation = DEFAULT_MAX_STAGNATION;
+		m_seed = System.nanoTime();
+		m_nbCandidates = instance.getNbCandidates();
+		m_candidates = instance.getCandidates();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Run the colony until the deadline, which must be set, starting with
+	 * sol as the best tour. The best tour found is written in sol with its
+	 * objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error MaxMinAntSystem : a deadline must be set before solve()");
+		}
+		int n = m_instance.getNbCities();
+		m_nbIterations = 0;
+		if (n < 4) {
+			sol.evaluate();
+			return sol;
+		}
+		int[] bestTour = new int[n + 1];
+		sol.copyTourInto(bestTour);
+		long bestLength = m_instance.getLength(bestTour, n);
+
+		// trails and heuristic weights of the candidate edges
+		int size = n * m_nbCandidates;
+		m_trails = new double[size];
+		m_heuristic = new double[size];
+		m_choiceInfo = new double[size];
+		for (int i = 0; i < n; i++) {
+			for (int k = i * m_nbCandidates; k < (i + 1) * m_nbCandidates; k++) {
+				m_heuristic[k] = Math.pow(1.0 / (m_instance.getDistancesUnchecked(i, m_candidates[k]) + 0.1), m_beta);
+			}
+		}
+		updateBounds(bestLength);
+		Arrays.fill(m_trails, m_tauMax);
+
+		SplittableRandom random = new SplittableRandom(m_seed);
+		Ant[] ants = new Ant[m_nbAnts];
+		for (int a = 0; a < m_nbAnts; a++) {
+			ants[a] = new Ant(random.split());
+		}
+		ExecutorService pool = (m_nbThreads > 1) ? Executors.newFixedThreadPool(m_nbThreads) : null;
+		try {
+			int stagnation = 0;
+			while (!isTimeUp()) {
+				computeChoiceInfo();
+				buildAnts(ants, pool);
+				if (isTimeUp()) {
+					break;
+				}
+				m_nbIterations++;
+
+				// the ants that were not built before the deadline are skipped
+				Ant iterationBest = null;
+				for (Ant ant : ants) {
+					if (ant.m_length != Long.MAX_VALUE && (iterationBest == null || ant.m_length < iterationBest.m_length)) {
+						iterationBest = ant;
+					}
+				}
+				if (iterationBest == null) {
+					break;
+				}
+				if (iterationBest.m_length < bestLength) {
+					bestLength = iterationBest.m_length;
+					System.arraycopy(iterationBest.m_tour, 0, bestTour, 0, n);
+					bestTour[n] = bestTour[0];
+					updateBounds(bestLength);
+					stagnation = 0;
+				} else {
+					stagnation++;
+				}
+
+				evaporate();
+				if (m_nbIterations % DEFAULT_GLOBAL_BEST_PERIOD == 0) {
+					deposit(bestTour, bestLength);
+				} else {
+					deposit(iterationBest.m_tour, iterationBest.m_length);
+				}
+				if (stagnation >= m_maxStagnation) {
+					Arrays.fill(m_trails, m_tauMax);
+					stagnation = 0;
+				}
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+
+		int start = 0;
+		while (bestTour[start] != 0) {
+			start++;
+		}
+		sol.setTour(bestTour, start);
+		sol.setObjectiveValue(bestLength);
+		return sol;
+	}
+
+	/**
+	 * Build the tours of the ants, in parallel if pool is not null. The ants
+	 * that are not built before the deadline have a length of Long.MAX_VALUE.
+	 */
+	private void buildAnts(Ant[] ants, ExecutorService pool) throws Exception {
+		if (pool == null) {
+			for (Ant ant : ants) {
+				ant.call();
+			}
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(Arrays.asList(ants));
+		try {
+			for (Future<Void> future : pool.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/** Compute tauMax and tauMin from the length of the best tour. */
+	private void updateBounds(long bestLength) {
+		int n = m_instance.getNbCities();
+		m_tauMax = 1.0 / (m_rho * Math.max(1, bestLength));
+		double root = Math.pow(m_pBest, 1.0 / n);
+		m_tauMin = Math.min(m_tauMax, m_tauMax * (1.0 - root) / ((n / 2.0 - 1.0) * root));
+	}
+
+	/** Compute m_choiceInfo from the trails. */
+	private void computeChoiceInfo() {
+		if (m_alpha == 1.0) {
+			for (int k = 0; k < m_trails.length; k++) {
+				m_choiceInfo[k] = m_trails[k] * m_heuristic[k];
+			}
+		} else {
+			for (int k = 0; k < m_trails.length; k++) {
+				m_choiceInfo[k] = Math.pow(m_trails[k], m_alpha) * m_heuristic[k];
+			}
+		}
+	}
+
+	/** Evaporate the trails, which stay above tauMin. */
+	private void evaporate() {
+		double factor = 1.0 - m_rho;
+		for (int k = 0; k < m_trails.length; k++) {
+			m_trails[k] = Math.max(m_tauMin, m_trails[k] * factor);
+		}
+	}
+
+	/**
+	 * Deposit 1/length on the candidate edges of a tour, in both directions,
+	 * the trails staying below tauMax.
+	 * @param tour the open tour
+	 * @param length its length
+	 */
+	private void deposit(int[] tour, long length) {
+		int n = m_instance.getNbCities();
+		double amount = 1.0 / Math.max(1, length);
+		for (int p = 0; p < n; p++) {
+			int i = tour[p];
+			int j = tour[(p + 1 == n) ? 0 : p + 1];
+			depositEdge(i, j, amount);
+			depositEdge(j, i, amount);
+		}
+	}
+
+	/** Deposit amount on the trail from i to j, if j is a candidate of i. */
+	private void depositEdge(int i, int j, double amount) {
+		for (int k = i * m_nbCandidates; k < (i + 1) * m_nbCandidates; k++) {
+			if (m_candidates[k] == j) {
+				m_trails[k] = Math.min(m_tauMax, m_trails[k] + amount);
+				return;
+			}
+		}
+	}
+
+	/** An ant: its tour and the structures used to build it, owned by one thread at a time. */
+	private class Ant implements Callable<Void> {
+
+		/** Random generator of the ant. */
+		private SplittableRandom m_random;
+
+		/** Tour of the ant (open tour). */
+		private int[] m_tour;
+
+		/** Length of m_tour, Long.MAX_VALUE if the ant was not built before the deadline. */
+		private long m_length;
+
+		/** m_visited[i] is `true` if city i is in the tour being built. */
+		private boolean[] m_visited;
+
+		/** Tree of the unvisited cities, null for the EDGE_WEIGHT_SECTION instances. */
+		private KdTree m_tree;
+
+		/** Local search of the ant, null if none. */
+		private ALocalSearch m_search;
+
+		/** Tour optimized by m_search. */
+		private ATour m_localTour;
+
+		/**
+		 * @param random the random generator of the ant
+		 */
+		Ant(SplittableRandom random) throws Exception {
+			int n = m_instance.getNbCities();
+			m_random = random;
+			m_tour = new int[n];
+			m_visited = new boolean[n];
+			m_tree = m_instance.createKdTree();
+			if (m_factory != null) {
+				m_search = m_factory.create(m_instance);
+				m_search.setDeadline(m_deadline);
+				m_localTour = ATour.create(n);
+			}
+		}
+
+		/**
+		 * Build the tour of the ant, then improve it with the local search. The
+		 * construction is abandoned if the deadline is reached.
+		 */
+		@Override
+		public Void call() throws Exception {
+			int n = m_tour.length;
+			m_length = Long.MAX_VALUE;
+			if (isTimeUp()) {
+				return null;
+			}
+			Arrays.fill(m_visited, false);
+			if (m_tree != null) {
+				m_tree.restoreAll();
+			}
+			int city = m_random.nextInt(n);
+			m_tour[0] = city;
+			visit(city);
+			for (int p = 1; p < n; p++) {
+				if ((p & (TIME_CHECK_PERIOD - 1)) == 0 && isTimeUp()) {
+					return null;
+				}
+				city = chooseNext(city);
+				m_tour[p] = city;
+				visit(city);
+			}
+
+			m_length = m_instance.getTourLengthUnchecked(m_tour, n);
+			if (m_search != null) {
+				m_localTour.setTour(m_tour);
+				m_search.clear();
+				m_search.activateAll(m_localTour);
+				m_length += m_search.optimize(m_localTour);
+				m_localTour.toArray(m_tour);
+			}
+			return null;
+		}
+
+		/**
+		 * Roulette wheel selection among the unvisited candidates of city,
+		 * the nearest unvisited city if they are all visited.
+		 */
+		private int chooseNext(int city) {
+			int first = city * m_nbCandidates;
+			int last = first + m_nbCandidates;
+			double sum = 0;
+			for (int k = first; k < last; k++) {
+				if (!m_visited[m_candidates[k]]) {
+					sum += m_choiceInfo[k];
+				}
+			}
+			if (sum > 0) {
+				double r = m_random.nextDouble() * sum;
+				int chosen = -1;
+				for (int k = first; k < last; k++) {
+					if (!m_visited[m_candidates[k]]) {
+						chosen = m_candidates[k];
+						r -= m_choiceInfo[k];
+						if (r < 0) {
+							break;
+						}
+					}
+				}
+				return chosen;
+			}
+			if (m_tree != null) {
+				return m_tree.nearestAlive(city);
+			}
+			int nearest = -1;
+			long distanceMin = Long.MAX_VALUE;
+			for (int i = 0; i < m_visited.length; i++) {
+				if (!m_visited[i]) {
+					long distance = m_instance.getDistancesUnchecked(city, i);
+					if (distance < distanceMin) {
+						distanceMin = distance;
+						nearest = i;
+					}
+				}
+			}
+			return nearest;
+		}
+
+		/** Marks city as visited. */
+		private void visit(int city) {
+			m_visited[city] = true;
+			if (m_tree != null) {
+				m_tree.remove(city);
+			}
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of iterations done by the last call to {@link #solve(Solution)} */
+	public long getNbIterations() {
+		return m_nbIterations;
+	}
+
+	/** @return the number of ants */
+	public int getNbAnts() {
+		return m_nbAnts;
+	}
+
+	/**
+	 * Sets the number of ants.
+	 * @param nbAnts the number of ants (at least 1)
+	 */
+	public void setNbAnts(int nbAnts) {
+		m_nbAnts = Math.max(1, nbAnts);
+	}
+
+	/**
+	 * Sets the weights of the pheromone trails and of the heuristic
+	 * information in the choice of the next city.
+	 * @param alpha the weight of the trails
+	 * @param beta the weight of the heuristic information
+	 */
+	public void setWeights(double alpha, double beta) {
+		m_alpha = alpha;
+		m_beta = beta;
+	}
+
+	/**
+	 * Sets the evaporation rate of the pheromone trails.
+	 * @param rho a rate between 0 (excluded) and 1
+	 */
+	public void setEvaporation(double rho) {
+		m_rho = rho;
+	}
+
+	/**
+	 * Sets the number of iterations without improvement of the best tour
+	 * after which the trails are reset to tauMax.
+	 * @param maxStagnation the number of iterations (at least 1)
+	 */
+	public void setMaxStagnation(int maxStagnation) {
+		m_maxStagnation = Math.max(1, maxStagnation);
+	}
+
+	/**
+	 * Sets the seed of the random generators of the ants.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_seed = seed;
+	}
+}
@@ -0,0 +1,354 @@
+package tsp.metaheuristic;
+
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * Parallel multi-start local search.
+ *
+ * Each worker thread owns a local search (see {@link ALocalSearch}), a tour
+ * and a random generator split from a common one. It runs a perturbation
+ * chain: two random cities of its best tour are exchanged, only the cities
+ * whose edges were modified are re-optimized, and the result replaces the
+ * best tour of the worker if it is not longer. Otherwise the kick is undone
+ * with the journal of the tour (see {@link ATour#rollback()}), so that a
+ * kick costs time proportional to its size rather than to the tour. After a given number of
+ * consecutive kicks without improvement, the worker restarts from a random
+ * tour: the best tour of the finished chain is first merged with the
+ * incumbent by a {@link PartitionCrossover}, and the child is re-optimized
+ * if it is better than the incumbent. The last chains are also merged,
+ * without re-optimization, so that no chain is discarded: a worker stops
+ * its kicks early enough to end this merge before the deadline.
+ *
+ * Every improvement of a worker is published to a shared incumbent; when the
+ * deadline is reached, the workers stop and the incumbent is written into
+ * the solution given to {@link #solve(Solution)}. The first worker starts
+ * from this solution, the others from random tours.
+ *
+ * @version 2017
+ */
+public class ParallelMultiStart extends AMetaheuristic {
+
+	/** Creates the local search of a worker. */
+	public interface LocalSearchFactory {
+		/** @return a new local search for the instance */
+		ALocalSearch create(Instance instance) throws Exception;
+	}
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Default number of consecutive kicks without improvement before a restart. */
+	public static final int DEFAULT_MAX_FAILURES = 1000;
+
+	/** Creates the local searches of the workers. */
+	private LocalSearchFactory m_factory;
+
+	/** Number of worker threads. */
+	private int m_nbThreads;
+
+	/** Number of consecutive kicks without improvement before a restart. */
+	private int m_maxFailures;
+
+	/** Seed of the random generators of the workers. */
+	private long m_seed;
+
+	/** Best tour found by the workers (open tour). */
+	private int[] m_bestTour;
+
+	/** Length of m_bestTour, read without lock to filter the publications. */
+	private volatile long m_bestLength;
+
+	/** First error met by a worker. */
+	private Exception m_error;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param factory creates the local search of each worker
+	 * @param nbThreads the number of worker threads (at least 1)
+	 */
+	public ParallelMultiStart(Instance instance, LocalSearchFactory factory, int nbThreads) throws Exception {
+		super(instance, "Parallel multi-start");
+		if (nbThreads < 1) {
+			throw new Exception("Error ParallelMultiStart : the number of threads " + nbThreads + " should be at least 1");
+		}
+		m_factory = factory;
+		m_nbThreads = nbThreads;
+		m_maxFailures = DEFAULT_MAX_FAILURES;
+		m_seed = System.nanoTime();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Run the workers until the deadline, which must be set. The best tour
+	 * found is written in sol with its objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error ParallelMultiStart : a deadline must be set before solve()");
+		}
+		int n = m_instance.getNbCities();
+		m_bestTour = new int[n];
+		sol.copyTourInto(m_bestTour);
+		m_bestLength = Long.MAX_VALUE;
+		m_error = null;
+
+		SplittableRandom random = new SplittableRandom(m_seed);
+		Thread[] threads = new Thread[m_nbThreads];
+		for (int t = 0; t < m_nbThreads; t++) {
+			Worker worker = new Worker(m_factory.create(m_instance), random.split(), t == 0 ? m_bestTour : null);
+			threads[t] = new Thread(worker, "tsp-worker-" + t);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (m_error != null) {
+			throw m_error;
+		}
+
+		synchronized (this) {
+			int start = 0;
+			while (m_bestTour[start] != 0) {
+				start++;
+			}
+			sol.setTour(m_bestTour, start);
+			sol.setObjectiveValue(m_bestLength);
+		}
+		return sol;
+	}
+
+	/** Replace the incumbent by tour if it is shorter. */
+	private synchronized void publish(ATour tour, long length) {
+		if (length < m_bestLength) {
+			tour.toArray(m_bestTour);
+			m_bestLength = length;
+		}
+	}
+
+	/** Replace the incumbent by the open tour if it is shorter. */
+	private synchronized void publish(int[] tour, long length) {
+		if (length < m_bestLength) {
+			System.arraycopy(tour, 0, m_bestTour, 0, tour.length);
+			m_bestLength = length;
+		}
+	}
+
+	/**
+	 * Copy the incumbent.
+	 * @param tour receives the incumbent (open tour)
+	 * @return the length of the incumbent
+	 */
+	private synchronized long copyIncumbent(int[] tour) {
+		System.arraycopy(m_bestTour, 0, tour, 0, tour.length);
+		return m_bestLength;
+	}
+
+	/** Record the first error met by a worker. */
+	private synchronized void fail(Exception e) {
+		if (m_error == null) {
+			m_error = e;
+		}
+	}
+
+	/** A perturbation chain run by one thread. */
+	private class Worker implements Runnable {
+
+		/** Local search of the worker. */
+		private ALocalSearch m_search;
+
+		/** Random generator of the worker. */
+		private SplittableRandom m_random;
+
+		/** Current tour, the best tour of the chain between two kicks. */
+		private ATour m_tour;
+
+		/** Best tour of the current chain (open tour), copied from m_tour at the end of the chain. */
+		private int[] m_chainBest;
+
+		/** Length of m_chainBest. */
+		private long m_chainBestLength;
+
+		/** Copy of the incumbent merged with m_chainBest (open tour). */
+		private int[] m_incumbent;
+
+		/** Merges the best tour of a chain with the incumbent. */
+		private PartitionCrossover m_crossover;
+
+		/** Child of m_crossover (open tour). */
+		private int[] m_child;
+
+		/**
+		 * @param search the local search of the worker
+		 * @param random the random generator of the worker
+		 * @param start the first tour, null for a random tour
+		 */
+		Worker(ALocalSearch search, SplittableRandom random, int[] start) {
+			int n = m_instance.getNbCities();
+			m_search = search;
+			m_search.setDeadline(m_deadline);
+			m_random = random;
+			m_tour = ATour.create(n);
+			m_chainBest = new int[n];
+			m_incumbent = new int[n];
+			m_crossover = new PartitionCrossover(m_instance);
+			m_child = new int[n];
+			if (start != null) {
+				System.arraycopy(start, 0, m_chainBest, 0, n);
+			} else {
+				randomTour(m_chainBest);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				int n = m_instance.getNbCities();
+				startChain();
+				if (n < 4 || isTimeUp()) {
+					return;
+				}
+				// the kicks stop early enough to merge the last chain before the
+				// deadline, with twice the time measured for a first merge
+				long time = System.nanoTime();
+				mergeChain(false);
+				long kickDeadline = m_deadline - 1 - 2 * (System.nanoTime() - time) / 1000000;
+				m_search.setDeadline(kickDeadline);
+
+				int failures = 0;
+				// m_tour is the best tour of the chain between two kicks
+				m_tour.startJournal();
+				while (System.currentTimeMillis() < kickDeadline) {
+					// exchange of two cities of the best tour of the chain
+					int i = m_random.nextInt(n);
+					int j = m_random.nextInt(n);
+					if (i == j) {
+						continue;
+					}
+					long length = m_chainBestLength + m_search.swapCities(m_tour, i, j);
+					length += m_search.optimize(m_tour);
+
+					if (length <= m_chainBestLength) {
+						m_tour.commit();
+					} else {
+						m_tour.rollback();
+					}
+					if (length < m_chainBestLength) {
+						failures = 0;
+						m_chainBestLength = length;
+						if (length < m_bestLength) {
+							publish(m_tour, length);
+						}
+					} else if (++failures >= m_maxFailures) {
+						m_tour.stopJournal();
+						m_tour.toArray(m_chainBest);
+						mergeChain(true);
+						randomTour(m_chainBest);
+						startChain();
+						m_tour.startJournal();
+						failures = 0;
+					}
+				}
+				m_tour.stopJournal();
+				if (!isTimeUp()) {
+					m_tour.toArray(m_chainBest);
+					mergeChain(false);
+				}
+			} catch (Exception e) {
+				fail(e);
+			}
+		}
+
+		/** Optimize m_chainBest from scratch. */
+		private void startChain() {
+			m_tour.setTour(m_chainBest);
+			m_search.clear();
+			m_search.activateAll(m_tour);
+			m_chainBestLength = m_search.length(m_tour) + m_search.optimize(m_tour);
+			m_tour.toArray(m_chainBest);
+			if (m_chainBestLength < m_bestLength) {
+				publish(m_tour, m_chainBestLength);
+			}
+		}
+
+		/**
+		 * Merge the best tour of the chain with the incumbent, and publish the
+		 * child if it is shorter than the incumbent.
+		 * @param optimize `true` to improve the child with the local search
+		 *        before its publication, in m_tour; m_tour is not modified otherwise
+		 */
+		private void mergeChain(boolean optimize) {
+			int n = m_instance.getNbCities();
+			if (n < 4) {
+				return;
+			}
+			long incumbent = copyIncumbent(m_incumbent);
+			long length = (incumbent <= m_chainBestLength) ? m_crossover.merge(m_incumbent, m_chainBest, m_child)
+					: m_crossover.merge(m_chainBest, m_incumbent, m_child);
+			if (length < incumbent) {
+				if (optimize) {
+					m_tour.setTour(m_child);
+					m_search.clear();
+					m_search.activateAll(m_tour);
+					length += m_search.optimize(m_tour);
+					publish(m_tour, length);
+				} else {
+					publish(m_child, length);
+				}
+			}
+		}
+
+		/** Fill tour with a random permutation of the cities. */
+		private void randomTour(int[] tour) {
+			for (int p = 0; p < tour.length; p++) {
+				int q = m_random.nextInt(p + 1);
+				tour[p] = tour[q];
+				tour[q] = p;
+			}
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of worker threads */
+	public int getNbThreads() {
+		return m_nbThreads;
+	}
+
+	/**
+	 * Sets the number of consecutive kicks without improvement after which a
+	 * worker restarts from a random tour.
+	 * @param maxFailures the number of kicks (at least 1)
+	 */
+	public void setMaxFailures(int maxFailures) {
+		m_maxFailures = Math.max(1, maxFailures);
+	}
+
+	/**
+	 * Sets the seed of the random generators of the workers.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_seed = seed;
+	}
+}
@@ -0,0 +1,309 @@
+package tsp.metaheuristic;
+
+import tsp.Instance;
+import tsp.Solution;
+
+/**
+ * Generalized partition crossover (GPX): merges tours into a tour at least
+ * as short as the shortest one.
+ *
+ * The union graph of two tours is split by removing their common edges: the
+ * connected components of the remaining edges are the parts of the instance
+ * where the tours differ, joined by the common edges. A tour crosses a
+ * component as a set of paths; a component is recombinable when both tours
+ * cross it with paths joining the same pairs of endpoints. The paths of
+ * either tour can then be chosen in each recombinable component
+ * independently, and the child takes the shorter ones. In the other
+ * components, the child keeps the paths of the first tour.
+ *
+ * The components are found with a union-find structure with path
+ * compression, so a merge costs almost linear time, in arrays allocated once.
+ *
+ * @version 2017
+ */
+public class PartitionCrossover {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** The instance of the problem. */
+	private Instance m_instance;
+
+	/** Number of cities. */
+	private int m_nbCities;
+
+	/** Successors and predecessors of the cities in the first and the second tours. */
+	private int[] m_nextA, m_prevA, m_nextB, m_prevB;
+
+	/** Union-find forest of the cities, then m_component[c] is the root of the component of c. */
+	private int[] m_component;
+
+	/** m_partnerA[c] is the other endpoint of the path of the first tour ending at c, -1 if c is not an endpoint. */
+	private int[] m_partnerA;
+
+	/** Numbers of paths of the first and the second tours in each component (indexed by its root). */
+	private int[] m_pathsA, m_pathsB;
+
+	/** Lengths of the paths of the first and the second tours in each component (indexed by its root). */
+	private long[] m_lengthA, m_lengthB;
+
+	/** m_fromSecond[r] is `true` if the paths of the component of root r are taken from the second tour. */
+	private boolean[] m_fromSecond;
+
+	/** Number of components of the last merge whose paths were taken from the second tour. */
+	private int m_nbImproved;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public PartitionCrossover(Instance instance) {
+		int n = instance.getNbCities();
+		m_instance = instance;
+		m_nbCities = n;
+		m_nextA = new int[n];
+		m_prevA = new int[n];
+		m_nextB = new int[n];
+		m_prevB = new int[n];
+		m_component = new int[n];
+		m_partnerA = new int[n];
+		m_pathsA = new int[n];
+		m_pathsB = new int[n];
+		m_lengthA = new long[n];
+		m_lengthB = new long[n];
+		m_fromSecond = new boolean[n];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Merge several solutions: the shortest one is merged with each of the
+	 * others in turn.
+	 *
+	 * @param parents the solutions to merge (at least one), whose objective
+	 *        values need not be up to date
+	 * @return a new solution, at least as short as the shortest parent, with its objective value
+	 * @throws Exception returns an error if no solution is given
+	 */
+	public Solution merge(Solution... parents) throws Exception {
+		if (parents.length == 0) {
+			throw new Exception("Error PartitionCrossover : at least one solution should be merged");
+		}
+		int n = m_nbCities;
+		int[] current = new int[n];
+		// closed tour, for Instance.getLength
+		int[] other = new int[n + 1];
+		int[] child = new int[n];
+		long best = Long.MAX_VALUE;
+		int first = 0;
+		for (int s = 0; s < parents.length; s++) {
+			parents[s].copyTourInto(other);
+			long length = m_instance.getLength(other, n);
+			if (length < best) {
+				best = length;
+				first = s;
+			}
+		}
+		parents[first].copyTourInto(current);
+		for (int s = 0; s < parents.length; s++) {
+			if (s != first) {
+				parents[s].copyTourInto(other);
+				best = merge(current, other, child);
+				int[] swap = current;
+				current = child;
+				child = swap;
+			}
+		}
+
+		Solution sol = new Solution(m_instance);
+		sol.setTour(current);
+		sol.setObjectiveValue(best);
+		return sol;
+	}
+
+	/**
+	 * Merge two open tours. The child is at least as short as the first tour,
+	 * so the shorter tour should be given first.
+	 *
+	 * @param first the first tour, whose paths are kept in the components that are not recombinable
+	 * @param second the second tour
+	 * @param child receives the child (open tour), may not be one of the parents
+	 * @return the length of the child
+	 */
+	public long merge(int[] first, int[] second, int[] child) {
+		int n = m_nbCities;
+		m_nbImproved = 0;
+		if (n < 4) {
+			System.arraycopy(first, 0, child, 0, n);
+			return length(child);
+		}
+		for (int p = 0; p < n; p++) {
+			int a = first[p], an = first[(p + 1 == n) ? 0 : p + 1];
+			m_nextA[a] = an;
+			m_prevA[an] = a;
+			int b = second[p], bn = second[(p + 1 == n) ? 0 : p + 1];
+			m_nextB[b] = bn;
+			m_prevB[bn] = b;
+		}
+
+		// components of the edges that are in one tour only
+		for (int c = 0; c < n; c++) {
+			m_component[c] = c;
+		}
+		for (int c = 0; c < n; c++) {
+			int a = m_nextA[c];
+			if (a != m_nextB[c] && a != m_prevB[c]) {
+				union(c, a);
+			}
+			int b = m_nextB[c];
+			if (b != m_nextA[c] && b != m_prevA[c]) {
+				union(c, b);
+			}
+		}
+		for (int c = 0; c < n; c++) {
+			m_component[c] = find(c);
+			m_partnerA[c] = -1;
+			m_pathsA[c] = 0;
+			m_pathsB[c] = 0;
+			m_lengthA[c] = 0;
+			m_lengthB[c] = 0;
+			m_fromSecond[c] = true;
+		}
+
+		// a path of a tour is a maximal run of consecutive cities of the same component
+		int startA = pathStart(first);
+		int startB = pathStart(second);
+		if (startA < 0 || startB < 0) {
+			// a single component: nothing to recombine
+			System.arraycopy(first, 0, child, 0, n);
+			return length(child);
+		}
+		for (int k = 0; k < n; ) {
+			int x = first[(startA + k) % n];
+			int r = m_component[x];
+			int y = x;
+			long length = 0;
+			for (k++; k < n && m_component[first[(startA + k) % n]] == r; k++) {
+				int c = first[(startA + k) % n];
+				length += m_instance.getDistancesUnchecked(y, c);
+				y = c;
+			}
+			m_partnerA[x] = y;
+			m_partnerA[y] = x;
+			m_pathsA[r]++;
+			m_lengthA[r] += length;
+		}
+		for (int k = 0; k < n; ) {
+			int x = second[(startB + k) % n];
+			int r = m_component[x];
+			int y = x;
+			long length = 0;
+			for (k++; k < n && m_component[second[(startB + k) % n]] == r; k++) {
+				int c = second[(startB + k) % n];
+				length += m_instance.getDistancesUnchecked(y, c);
+				y = c;
+			}
+			if (m_partnerA[x] != y) {
+				m_fromSecond[r] = false;
+			}
+			m_pathsB[r]++;
+			m_lengthB[r] += length;
+		}
+		for (int c = 0; c < n; c++) {
+			if (m_component[c] == c) {
+				// recombinable and shorter in the second tour
+				m_fromSecond[c] &= (m_pathsA[c] == m_pathsB[c]) && (m_lengthB[c] < m_lengthA[c]);
+				if (m_fromSecond[c]) {
+					m_nbImproved++;
+				}
+			}
+		}
+
+		// the child follows the first tour, the paths of the improving components being replaced
+		int q = 0;
+		for (int k = 0; k < n; ) {
+			int x = first[(startA + k) % n];
+			int r = m_component[x];
+			int y = m_partnerA[x];
+			if (m_fromSecond[r]) {
+				// the path of the second tour from x to y
+				child[q++] = x;
+				if (y != x) {
+					boolean forward = (m_component[m_nextB[x]] == r);
+					int c = x;
+					do {
+						c = forward ? m_nextB[c] : m_prevB[c];
+						child[q++] = c;
+					} while (c != y);
+				}
+				while (k < n && m_component[first[(startA + k) % n]] == r) {
+					k++;
+				}
+			} else {
+				while (k < n && m_component[first[(startA + k) % n]] == r) {
+					child[q++] = first[(startA + k) % n];
+					k++;
+				}
+			}
+		}
+		return length(child);
+	}
+
+	/** @return the index of a city of tour whose predecessor is in another component, -1 if there is none */
+	private int pathStart(int[] tour) {
+		int n = tour.length;
+		for (int p = 0; p < n; p++) {
+			if (m_component[tour[p]] != m_component[tour[(p == 0) ? n - 1 : p - 1]]) {
+				return p;
+			}
+		}
+		return -1;
+	}
+
+	/** @return the root of the tree of c in the union-find forest, compressing the path */
+	private int find(int c) {
+		int root = c;
+		while (m_component[root] != root) {
+			root = m_component[root];
+		}
+		while (m_component[c] != root) {
+			int parent = m_component[c];
+			m_component[c] = root;
+			c = parent;
+		}
+		return root;
+	}
+
+	/** Merge the trees of c and d in the union-find forest. */
+	private void union(int c, int d) {
+		int rc = find(c);
+		int rd = find(d);
+		if (rc != rd) {
+			m_component[rc] = rd;
+		}
+	}
+
+	/** @return the length of the open tour */
+	private long length(int[] tour) {
+		return m_instance.getTourLengthUnchecked(tour, m_nbCities);
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of components whose paths were taken from the second tour by the last merge */
+	public int getNbImproved() {
+		return m_nbImproved;
+	}
+}
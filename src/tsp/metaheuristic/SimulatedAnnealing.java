@@ -0,0 +1,320 @@
+package tsp.metaheuristic;
+
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * Simulated annealing on 2-opt and Or-opt moves.
+ *
+ * A move is drawn from the candidate lists: a random city a and one of its
+ * candidates c, then either the 2-opt move adding the edge (a,c), or the
+ * Or-opt move inserting the segment of 1 to 3 cities starting at a next to
+ * c. The variation of the tour length is computed in constant time from
+ * the distances of the edges removed and added, and the move is applied
+ * only if it is accepted.
+ *
+ * A move of variation delta > 0 is accepted with probability exp(-delta/T),
+ * that is when delta < T * (-ln u) for u uniform in (0,1): -ln u is read
+ * in a table of {@link #THRESHOLD_TABLE_SIZE} values indexed by random bits,
+ * so that no exponential or logarithm is computed per move.
+ *
+ * The temperature decreases geometrically with the elapsed time, from T0 to
+ * T0 * {@link #DEFAULT_FINAL_RATIO} at the deadline, so the whole schedule
+ * fits in the time given whatever the speed of the machine. T0 is
+ * calibrated before the search on the mean variation of random uphill moves,
+ * so that they are accepted with probability {@link #DEFAULT_INITIAL_ACCEPTANCE}.
+ *
+ * The best tour is saved when the current tour is better at the periodic
+ * checks of the time (every {@link #CHECK_PERIOD} moves). The best tour is
+ * finally improved by a local search, if one is given.
+ *
+ * @version 2017
+ */
+public class SimulatedAnnealing extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of values of the table of -ln u (a power of 2). */
+	public static final int THRESHOLD_TABLE_SIZE = 1 << 16;
+
+	/** Number of moves between two updates of the temperature. */
+	public static final int CHECK_PERIOD = 1 << 12;
+
+	/** Number of random moves evaluated to calibrate the initial temperature. */
+	private static final int CALIBRATION_MOVES = 10000;
+
+	/** Maximum length of the segments moved by Or-opt. */
+	private static final int OR_OPT_MAX_LENGTH = 3;
+
+	/** Default probability of accepting a mean uphill move at the start. */
+	public static final double DEFAULT_INITIAL_ACCEPTANCE = 0.1;
+
+	/** Default ratio between the final and the initial temperatures. */
+	public static final double DEFAULT_FINAL_RATIO = 1e-3;
+
+	/** -ln((k + 0.5) / THRESHOLD_TABLE_SIZE) for each index k. */
+	private static final double[] THRESHOLDS = new double[THRESHOLD_TABLE_SIZE];
+
+	static {
+		for (int k = 0; k < THRESHOLD_TABLE_SIZE; k++) {
+			THRESHOLDS[k] = -Math.log((k + 0.5) / THRESHOLD_TABLE_SIZE);
+		}
+	}
+
+	/** Number of cities. */
+	private int m_nbCities;
+
+	/** Number of candidates per city. */
+	private int m_nbCandidates;
+
+	/** Candidate lists of the instance. */
+	private int[] m_candidates;
+
+	/** Local search applied to the best tour at the end, null if none. */
+	private ALocalSearch m_search;
+
+	/** Probability of accepting a mean uphill move at the start. */
+	private double m_initialAcceptance;
+
+	/** Ratio between the final and the initial temperatures. */
+	private double m_finalRatio;
+
+	/** Random generator. */
+	private SplittableRandom m_random;
+
+	/** Tour being annealed. */
+	private ATour m_tour;
+
+	/** Variation of the tour length of the last move drawn by {@link #tryMove(double)}, applied or not. */
+	private long m_lastDelta;
+
+	/** Number of moves evaluated by the last call to {@link #solve(Solution)}. */
+	private long m_nbMoves;
+
+	/** Number of moves applied by the last call to {@link #solve(Solution)}. */
+	private long m_nbAccepted;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param search the local search applied to the best tour at the end,
+	 *        null for none, stopped at its own deadline
+	 */
+	public SimulatedAnnealing(Instance instance, ALocalSearch search) throws Exception {
+		super(instance, "Simulated annealing");
+		m_nbCities = instance.getNbCities();
+		m_nbCandidates = instance.getNbCandidates();
+		m_candidates = instance.getCandidates();
+		m_search = search;
+		m_initialAcceptance = DEFAULT_INITIAL_ACCEPTANCE;
+		m_finalRatio = DEFAULT_FINAL_RATIO;
+		m_random = new SplittableRandom();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Anneal sol until the deadline, which must be set. The best tour found
+	 * is written in sol with its objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error SimulatedAnnealing : a deadline must be set before solve()");
+		}
+		int n = m_nbCities;
+		m_nbMoves = 0;
+		m_nbAccepted = 0;
+		m_tour = ATour.create(n);
+		m_tour.setTour(sol);
+		long current = length(m_tour);
+		long best = current;
+		int[] bestTour = new int[n];
+		m_tour.toArray(bestTour);
+
+		if (n >= OR_OPT_MAX_LENGTH + 5 && m_nbCandidates > 0) {
+			long start = System.currentTimeMillis();
+			double duration = Math.max(1, m_deadline - start);
+			// the downhill moves of the calibration are applied
+			double t0 = initialTemperature();
+			current = length(m_tour);
+			if (current < best) {
+				best = current;
+				m_tour.toArray(bestTour);
+			}
+			double logRatio = Math.log(m_finalRatio);
+			double temperature = t0;
+			long now = start;
+			while (now < m_deadline) {
+				for (int k = 0; k < CHECK_PERIOD; k++) {
+					long delta = tryMove(temperature);
+					if (delta != Long.MAX_VALUE) {
+						current += delta;
+						m_nbAccepted++;
+					}
+				}
+				m_nbMoves += CHECK_PERIOD;
+				if (current < best) {
+					best = current;
+					m_tour.toArray(bestTour);
+				}
+				now = System.currentTimeMillis();
+				temperature = t0 * Math.exp(logRatio * (now - start) / duration);
+			}
+		}
+
+		if (m_search != null) {
+			m_tour.setTour(bestTour);
+			m_search.clear();
+			m_search.activateAll(m_tour);
+			best += m_search.optimize(m_tour);
+			m_tour.toArray(bestTour);
+		}
+		sol.setTour(bestTour, 0);
+		sol.setObjectiveValue(best);
+		return sol;
+	}
+
+	/**
+	 * @return the temperature at which a mean uphill move among
+	 *         {@link #CALIBRATION_MOVES} random moves is accepted with
+	 *         probability m_initialAcceptance
+	 */
+	private double initialTemperature() {
+		long sum = 0;
+		int count = 0;
+		for (int k = 0; k < CALIBRATION_MOVES; k++) {
+			// at a temperature of 0, the uphill moves are only measured and the downhill ones are applied
+			m_lastDelta = 0;
+			if (tryMove(0) != Long.MAX_VALUE) {
+				m_nbAccepted++;
+			} else if (m_lastDelta > 0) {
+				sum += m_lastDelta;
+				count++;
+			}
+		}
+		m_nbMoves += CALIBRATION_MOVES;
+		return (count == 0) ? 1.0 : (sum / (double) count) / -Math.log(m_initialAcceptance);
+	}
+
+	/**
+	 * Draw a random 2-opt or Or-opt move from the candidate lists, and apply
+	 * it if it is accepted at the given temperature.
+	 *
+	 * @param temperature the temperature
+	 * @return the variation of the tour length if the move is applied,
+	 *         Long.MAX_VALUE otherwise
+	 */
+	private long tryMove(double temperature) {
+		ATour tour = m_tour;
+		long bits = m_random.nextLong();
+		int a = (int) (((bits >>> 32) * m_nbCities) >>> 32);
+		int c = m_candidates[a * m_nbCandidates + (int) ((((bits >>> 16) & 0xFFFF) * m_nbCandidates) >>> 16)];
+		boolean forward = (bits & 1) != 0;
+		long delta;
+		if ((bits & 2) != 0) {
+			// 2-opt: the edges (a,b) and (c,d) are replaced by (a,c) and (b,d)
+			int b = forward ? tour.next(a) : tour.prev(a);
+			int d = forward ? tour.next(c) : tour.prev(c);
+			if (c == b || d == a) {
+				return Long.MAX_VALUE;
+			}
+			delta = m_instance.getDistancesUnchecked(a, c) + m_instance.getDistancesUnchecked(b, d)
+					- m_instance.getDistancesUnchecked(a, b) - m_instance.getDistancesUnchecked(c, d);
+			m_lastDelta = delta;
+			if (!accept(delta, temperature)) {
+				return Long.MAX_VALUE;
+			}
+			tour.make2OptMove(a, b, c, d);
+			return delta;
+		}
+
+		// Or-opt: the segment s1..s2 (between p and nx) is inserted between c and e, s1 next to c
+		int length = 1 + (int) (((bits >>> 2) & 0xFF) % OR_OPT_MAX_LENGTH);
+		int s1 = a;
+		int s2 = a;
+		int sMid = a;
+		for (int l = 1; l < length; l++) {
+			sMid = (l == 1) ? s1 : s2;
+			s2 = forward ? tour.next(s2) : tour.prev(s2);
+		}
+		int p = forward ? tour.prev(s1) : tour.next(s1);
+		int nx = forward ? tour.next(s2) : tour.prev(s2);
+		boolean eNext = (bits & 0x400) != 0;
+		int e = eNext ? tour.next(c) : tour.prev(c);
+		if (c == p || c == nx || c == s1 || c == sMid || c == s2
+				|| e == p || e == nx || e == s1 || e == sMid || e == s2) {
+			return Long.MAX_VALUE;
+		}
+		delta = m_instance.getDistancesUnchecked(c, s1) + m_instance.getDistancesUnchecked(s2, e)
+				+ m_instance.getDistancesUnchecked(p, nx) - m_instance.getDistancesUnchecked(c, e)
+				- m_instance.getDistancesUnchecked(p, s1) - m_instance.getDistancesUnchecked(s2, nx);
+		m_lastDelta = delta;
+		if (!accept(delta, temperature)) {
+			return Long.MAX_VALUE;
+		}
+		ALocalSearch.moveSegment(tour, p, s1, s2, nx, c, e, forward == eNext);
+		return delta;
+	}
+
+	/**
+	 * @return `true` if a move of variation delta is accepted at the given
+	 *         temperature: delta <= 0, or delta < temperature * (-ln u)
+	 */
+	private boolean accept(long delta, double temperature) {
+		return delta <= 0 || delta < temperature * THRESHOLDS[m_random.nextInt() & (THRESHOLD_TABLE_SIZE - 1)];
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of moves evaluated by the last call to {@link #solve(Solution)} */
+	public long getNbMoves() {
+		return m_nbMoves;
+	}
+
+	/** @return the number of moves applied by the last call to {@link #solve(Solution)} */
+	public long getNbAccepted() {
+		return m_nbAccepted;
+	}
+
+	/**
+	 * Sets the probability of accepting a mean uphill move at the start,
+	 * which determines the initial temperature.
+	 * @param initialAcceptance a probability between 0 and 1 (excluded)
+	 */
+	public void setInitialAcceptance(double initialAcceptance) {
+		m_initialAcceptance = initialAcceptance;
+	}
+
+	/**
+	 * Sets the ratio between the temperatures at the deadline and at the start.
+	 * @param finalRatio a ratio between 0 and 1 (excluded)
+	 */
+	public void setFinalRatio(double finalRatio) {
+		m_finalRatio = finalRatio;
+	}
+
+	/**
+	 * Sets the seed of the random generator.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_random = new SplittableRandom(seed);
+	}
+}
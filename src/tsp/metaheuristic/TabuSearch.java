@@ -0,0 +1,313 @@
+package tsp.metaheuristic;
+
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ATour;
+
+/**
+ * Iterated tabu search on 2-opt moves.
+ *
+ * The search starts from the local optimum of a local search (2-opt/Or-opt
+ * with don't-look bits in TSPSolver). At each iteration, the 2-opt moves
+ * adding an edge between a city and one of its candidates are evaluated,
+ * and the best allowed one is applied, even if it makes the tour longer.
+ * The two edges removed by the move become tabu for a random number of
+ * iterations between the tenure and the tenure plus its range, and the two
+ * edges it adds for the tenure: a move adding a removed edge or removing an
+ * added edge is not allowed, unless it leads to a tour shorter than the
+ * best one found (aspiration criterion). The default tenure grows with the
+ * number of cities. The tabu edges are kept in two {@link TabuTable}.
+ *
+ * When the best tour has not been improved for {@link #DEFAULT_STAGNATION}
+ * iterations, the walk ends: the local search re-optimizes the cities it
+ * moved, and the search goes back to the best tour (through the journal of
+ * the tour, see {@link ATour#rollback()}) unless the walk led to a tour as
+ * short. The best tour is then kicked by a random exchange of two cities,
+ * and the next walk examines only the candidate moves of the last
+ * {@link #FOCUS_SIZE} cities moved by the kick or the walk: a scan of all
+ * the cities costs too much to leave time for many walks.
+ *
+ * The first iteration, and every iteration without a local search, examine
+ * all the cities; on large instances, only {@link #DEFAULT_MAX_SCAN}
+ * consecutive cities (following the numbering, from a random city).
+ *
+ * @version 2017
+ */
+public class TabuSearch extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Minimum of the default number of iterations during which a removed edge is tabu. */
+	public static final int DEFAULT_TENURE = 20;
+
+	/** The default tenure is the number of cities divided by this ratio, if it is larger than DEFAULT_TENURE. */
+	public static final int DEFAULT_TENURE_RATIO = 20;
+
+	/** Default number of iterations without a new best tour before a restart from the best tour. */
+	public static final int DEFAULT_STAGNATION = 10;
+
+	/** Number of cities, around the last moves, whose candidate moves are examined. */
+	private static final int FOCUS_SIZE = 32;
+
+	/** Default maximum number of cities examined per iteration. */
+	public static final int DEFAULT_MAX_SCAN = 1000;
+
+	/** Number of cities. */
+	private int m_nbCities;
+
+	/** Number of candidates per city. */
+	private int m_nbCandidates;
+
+	/** Candidate lists of the instance. */
+	private int[] m_candidates;
+
+	/** Minimum number of iterations during which a removed edge is tabu. */
+	private int m_tenure;
+
+	/** Range of the random part of the tenure. */
+	private int m_tenureRange;
+
+	/** Number of iterations without a new best tour before a restart from the best tour. */
+	private long m_stagnation;
+
+	/** Maximum number of cities examined per iteration. */
+	private int m_maxScan;
+
+	/** Random generator. */
+	private SplittableRandom m_random;
+
+	/** Local search applied to the initial tour and at the end of each walk, null for none. */
+	private ALocalSearch m_search;
+
+	/** Number of iterations done by the last call to {@link #solve(Solution)}. */
+	private long m_nbIterations;
+
+	/** Number of restarts from the best tour during the last call to {@link #solve(Solution)}. */
+	private long m_nbRestarts;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param search the local search applied to the initial tour and at the
+	 *        end of each walk, null for none, stopped at its own deadline
+	 */
+	public TabuSearch(Instance instance, ALocalSearch search) throws Exception {
+		super(instance, "Tabu search");
+		m_nbCities = instance.getNbCities();
+		m_nbCandidates = instance.getNbCandidates();
+		m_candidates = instance.getCandidates();
+		m_search = search;
+		m_tenure = Math.max(DEFAULT_TENURE, m_nbCities / DEFAULT_TENURE_RATIO);
+		m_tenureRange = m_tenure;
+		m_stagnation = DEFAULT_STAGNATION;
+		m_maxScan = DEFAULT_MAX_SCAN;
+		m_random = new SplittableRandom();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Apply the best allowed moves on sol until the deadline, which must be
+	 * set. The best tour found is written in sol with its objective value.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		if (m_deadline == Long.MAX_VALUE) {
+			throw new Exception("Error TabuSearch : a deadline must be set before solve()");
+		}
+		int n = m_nbCities;
+		m_nbIterations = 0;
+		m_nbRestarts = 0;
+		ATour tour = ATour.create(n);
+		tour.setTour(sol);
+		long current = length(tour);
+		if (m_search != null) {
+			m_search.clear();
+			m_search.activateAll(tour);
+			current += m_search.optimize(tour);
+		}
+		long best = current;
+
+		if (n >= 8 && m_nbCandidates > 0) {
+			// edges removed by the last moves, which cannot be added, and edges added, which cannot be removed
+			TabuTable removed = new TabuTable(2 * (m_tenure + m_tenureRange));
+			TabuTable added = new TabuTable(2 * m_tenure);
+			// cities whose candidate moves are examined, the whole tour (or a window of m_maxScan cities) if empty
+			int[] focus = new int[FOCUS_SIZE];
+			int focusSize = 0;
+			long lastImprovement = 0;
+			// the moves since the best tour are recorded, so that the search can go back to it
+			tour.startJournal();
+			while (!isTimeUp()) {
+				long iteration = ++m_nbIterations;
+				if (iteration - lastImprovement > m_stagnation) {
+					// end of the walk: descent from the cities it moved, then back to the best tour, kicked
+					if (m_search != null) {
+						current += m_search.optimize(tour);
+						m_search.clear();
+					}
+					if (current <= best) {
+						best = current;
+						tour.commit();
+					} else {
+						tour.rollback();
+						current = best;
+					}
+					removed.clear();
+					added.clear();
+					focusSize = 0;
+					if (m_search != null) {
+						int u = m_random.nextInt(n);
+						int v = m_random.nextInt(n - 1);
+						if (v >= u) {
+							v++;
+						}
+						focus[focusSize++] = u;
+						focus[focusSize++] = tour.prev(u);
+						focus[focusSize++] = tour.next(u);
+						focus[focusSize++] = v;
+						focus[focusSize++] = tour.prev(v);
+						focus[focusSize++] = tour.next(v);
+						current += m_search.swapCities(tour, u, v);
+					}
+					lastImprovement = iteration;
+					m_nbRestarts++;
+				}
+
+				// best allowed move among the candidate moves of the scanned cities
+				long bestDelta = Long.MAX_VALUE;
+				int moveA = -1, moveB = -1, moveC = -1, moveD = -1;
+				int scan = (focusSize > 0) ? Math.min(focusSize, FOCUS_SIZE) : Math.min(n, m_maxScan);
+				int first = (focusSize > 0 || scan == n) ? 0 : m_random.nextInt(n);
+				for (int k = 0; k < scan; k++) {
+					int a = (focusSize > 0) ? focus[k] : (first + k < n) ? first + k : first + k - n;
+					for (int dir = 0; dir < 2; dir++) {
+						boolean forward = (dir == 0);
+						int b = forward ? tour.next(a) : tour.prev(a);
+						long dab = m_instance.getDistancesUnchecked(a, b);
+						for (int r = a * m_nbCandidates; r < (a + 1) * m_nbCandidates; r++) {
+							int c = m_candidates[r];
+							int d = forward ? tour.next(c) : tour.prev(c);
+							if (c == b || d == a) {
+								continue;
+							}
+							long delta = m_instance.getDistancesUnchecked(a, c) + m_instance.getDistancesUnchecked(b, d)
+									- dab - m_instance.getDistancesUnchecked(c, d);
+							if (delta >= bestDelta) {
+								continue;
+							}
+							boolean isTabu = removed.contains(a, c, iteration) || removed.contains(b, d, iteration)
+									|| added.contains(a, b, iteration) || added.contains(c, d, iteration);
+							if (isTabu && current + delta >= best) {
+								continue;
+							}
+							bestDelta = delta;
+							moveA = a;
+							moveB = b;
+							moveC = c;
+							moveD = d;
+						}
+					}
+				}
+				if (moveA < 0) {
+					// every move is tabu: the tabu edges are released
+					removed.clear();
+					added.clear();
+					continue;
+				}
+
+				tour.make2OptMove(moveA, moveB, moveC, moveD);
+				current += bestDelta;
+				removed.add(moveA, moveB, iteration + m_tenure + m_random.nextInt(m_tenureRange + 1), iteration);
+				removed.add(moveC, moveD, iteration + m_tenure + m_random.nextInt(m_tenureRange + 1), iteration);
+				added.add(moveA, moveC, iteration + m_tenure, iteration);
+				added.add(moveB, moveD, iteration + m_tenure, iteration);
+				for (int c : new int[] { moveA, moveB, moveC, moveD }) {
+					if (m_search != null) {
+						m_search.activate(c);
+					}
+					focus[focusSize % FOCUS_SIZE] = c;
+					focusSize++;
+				}
+				if (current < best) {
+					best = current;
+					tour.commit();
+					lastImprovement = iteration;
+				}
+			}
+			if (current != best) {
+				tour.rollback();
+			}
+			tour.stopJournal();
+		}
+
+		int[] bestTour = new int[n];
+		tour.toArray(bestTour);
+		sol.setTour(bestTour, 0);
+		sol.setObjectiveValue(best);
+		return sol;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of iterations done by the last call to {@link #solve(Solution)} */
+	public long getNbIterations() {
+		return m_nbIterations;
+	}
+
+	/** @return the number of restarts from the best tour during the last call to {@link #solve(Solution)} */
+	public long getNbRestarts() {
+		return m_nbRestarts;
+	}
+
+	/**
+	 * Sets the number of iterations during which a removed edge is tabu: a
+	 * random number between tenure and tenure + range.
+	 * @param tenure the minimum number of iterations
+	 * @param range the range of the random part
+	 */
+	public void setTenure(int tenure, int range) {
+		m_tenure = Math.max(0, tenure);
+		m_tenureRange = Math.max(0, range);
+	}
+
+	/**
+	 * Sets the number of iterations without a new best tour after which the
+	 * search restarts from the best tour.
+	 * @param stagnation the number of iterations (at least 1)
+	 */
+	public void setStagnation(long stagnation) {
+		m_stagnation = Math.max(1, stagnation);
+	}
+
+	/**
+	 * Sets the maximum number of cities examined per iteration.
+	 * @param maxScan the number of cities (at least 1)
+	 */
+	public void setMaxScan(int maxScan) {
+		m_maxScan = Math.max(1, maxScan);
+	}
+
+	/**
+	 * Sets the seed of the random generator.
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		m_random = new SplittableRandom(seed);
+	}
+}
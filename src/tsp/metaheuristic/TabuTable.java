@@ -0,0 +1,158 @@
+package tsp.metaheuristic;
+
+import java.util.Arrays;
+
+/**
+ * Tabu memory of unordered pairs of integers (edges of a tour, or pairs of
+ * positions), each pair being tabu until a given iteration.
+ *
+ * The pairs are stored in an open addressing hash table with linear
+ * probing, in primitive arrays: checking or updating a pair costs O(1) on
+ * average, without allocation. When the table is half full, the expired
+ * pairs are purged and the table grows if needed.
+ *
+ * @version 2017
+ */
+public class TabuTable {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Value of the pairs that stay tabu until {@link #clear()}. */
+	public static final long FOREVER = Long.MAX_VALUE;
+
+	/** Keys of the pairs plus one (0 for an empty slot). */
+	private long[] m_keys;
+
+	/** m_expiry[s] is the first iteration at which the pair of slot s is no longer tabu. */
+	private long[] m_expiry;
+
+	/** Number of pairs in the table. */
+	private int m_size;
+
+	/** Number of slots minus one (the number of slots is a power of 2). */
+	private int m_mask;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param expectedSize the number of pairs expected to be tabu at the same time
+	 */
+	public TabuTable(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(8, 4 * expectedSize - 1)) << 1;
+		m_keys = new long[capacity];
+		m_expiry = new long[capacity];
+		m_mask = capacity - 1;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/** @return the key of the unordered pair (i,j), plus one */
+	private static long key(int i, int j) {
+		return (i < j) ? (((long) i << 32) | (j & 0xFFFFFFFFL)) + 1 : (((long) j << 32) | (i & 0xFFFFFFFFL)) + 1;
+	}
+
+	/** @return the first slot of key */
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & m_mask;
+	}
+
+	/**
+	 * Makes the pair (i,j) tabu until an iteration (excluded), replacing its
+	 * previous expiry.
+	 * @param i a number
+	 * @param j a number
+	 * @param until the first iteration at which (i,j) is no longer tabu, FOREVER
+	 *        to keep it until {@link #clear()}
+	 * @param now the current iteration (the pairs expired at now can be purged)
+	 */
+	public void add(int i, int j, long until, long now) {
+		long key = key(i, j);
+		int s = slot(key);
+		while (m_keys[s] != 0) {
+			if (m_keys[s] == key) {
+				m_expiry[s] = until;
+				return;
+			}
+			s = (s + 1) & m_mask;
+		}
+		m_keys[s] = key;
+		m_expiry[s] = until;
+		if (++m_size > (m_mask >>> 1)) {
+			rehash(now);
+		}
+	}
+
+	/**
+	 * @param i a number
+	 * @param j a number
+	 * @param now the current iteration
+	 * @return `true` if the pair (i,j) is tabu at iteration now
+	 */
+	public boolean contains(int i, int j, long now) {
+		long key = key(i, j);
+		int s = slot(key);
+		while (m_keys[s] != 0) {
+			if (m_keys[s] == key) {
+				return m_expiry[s] > now;
+			}
+			s = (s + 1) & m_mask;
+		}
+		return false;
+	}
+
+	/** Removes all the pairs. */
+	public void clear() {
+		if (m_size > 0) {
+			Arrays.fill(m_keys, 0);
+			m_size = 0;
+		}
+	}
+
+	/** Rebuilds the table without the pairs expired at now, doubling its capacity if they still fill a quarter of it. */
+	private void rehash(long now) {
+		long[] keys = m_keys;
+		long[] expiry = m_expiry;
+		int alive = 0;
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != 0 && expiry[s] > now) {
+				alive++;
+			}
+		}
+		int capacity = (alive > (keys.length >>> 2)) ? 2 * keys.length : keys.length;
+		m_keys = new long[capacity];
+		m_expiry = new long[capacity];
+		m_mask = capacity - 1;
+		m_size = 0;
+		for (int s = 0; s < keys.length; s++) {
+			if (keys[s] != 0 && expiry[s] > now) {
+				int t = slot(keys[s]);
+				while (m_keys[t] != 0) {
+					t = (t + 1) & m_mask;
+				}
+				m_keys[t] = keys[s];
+				m_expiry[t] = expiry[s];
+				m_size++;
+			}
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of pairs in the table, expired or not */
+	public int size() {
+		return m_size;
+	}
+}
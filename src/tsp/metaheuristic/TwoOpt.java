@@ -0,0 +1,139 @@
+package tsp.metaheuristic;
+
+import tsp.Instance;
+import tsp.Solution;
+import tsp.tour.ArrayTour;
+
+/**
+ * 2-opt local search working directly on a primitive tour.
+ *
+ * The tour is stored in an int array of size nbCities (the closing city is
+ * implicit) together with the inverse permutation, so that an improving move
+ * is applied by reversing a segment in place. Among the two segments whose
+ * reversal gives the same tour, the shorter one is reversed.
+ *
+ * Moves are evaluated with their cost delta only (four distances), no
+ * intermediate tour is ever built.
+ *
+ * @version 2017
+ */
+public class TwoOpt extends AMetaheuristic {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of cities in the problem. */
+	private int m_nbCities;
+
+	/** Working tour: m_tour[p] is the city at position p (closing city not stored). */
+	private int[] m_tour;
+
+	/** Inverse of m_tour: m_positions[c] is the position of city c in m_tour. */
+	private int[] m_positions;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public TwoOpt(Instance instance) throws Exception {
+		super(instance, "2-opt");
+		m_nbCities = instance.getNbCities();
+		m_tour = new int[m_nbCities];
+		m_positions = new int[m_nbCities];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Apply 2-opt moves on sol until a local optimum is reached. The solution
+	 * is modified and returned, its objective value is updated.
+	 */
+	@Override
+	public Solution solve(Solution sol) throws Exception {
+		sol.copyTourInto(m_tour);
+		long cost = tourLength(m_tour) + optimize(m_tour);
+		writeBack(m_tour, sol);
+		sol.setObjectiveValue(cost);
+		return sol;
+	}
+
+	/**
+	 * Apply first improvement 2-opt moves on tour until a local optimum is
+	 * reached. The tour is modified in place and may be rotated.
+	 *
+	 * @param tour an open tour containing each city exactly once
+	 * @return the variation of the tour length (negative or zero)
+	 */
+	public long optimize(int[] tour) {
+		int n = m_nbCities;
+		int[] pos = m_positions;
+		for (int p = 0; p < n; p++) {
+			pos[tour[p]] = p;
+		}
+
+		long total = 0;
+		boolean improved = true;
+		while (improved) {
+			improved = false;
+			for (int i = 0; i < n - 2; i++) {
+				int a = tour[i];
+				int b = tour[i + 1];
+				long dab = m_instance.getDistancesUnchecked(a, b);
+				// when i = 0 the edge (tour[n-1], tour[0]) is adjacent to (a, b)
+				int jMax = (i == 0) ? n - 2 : n - 1;
+				for (int j = i + 2; j <= jMax; j++) {
+					int c = tour[j];
+					int d = tour[(j + 1 == n) ? 0 : j + 1];
+					long delta = m_instance.getDistancesUnchecked(a, c)
+							+ m_instance.getDistancesUnchecked(b, d)
+							- dab
+							- m_instance.getDistancesUnchecked(c, d);
+					if (delta < 0) {
+						ArrayTour.reverse(tour, pos, i + 1, j);
+						total += delta;
+						improved = true;
+						// the reversal may have been applied on the other side
+						a = tour[i];
+						b = tour[i + 1];
+						dab = m_instance.getDistancesUnchecked(a, b);
+					}
+				}
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @param tour an open tour
+	 * @return the length of the closed tour
+	 */
+	public long tourLength(int[] tour) {
+		return m_instance.getTourLengthUnchecked(tour, tour.length);
+	}
+
+	/**
+	 * Copy an open tour into sol, rotated so that the route starts and ends
+	 * with city 0. The objective value of sol is not modified.
+	 *
+	 * @param tour an open tour containing each city exactly once
+	 * @param sol the solution to fill
+	 */
+	public static void writeBack(int[] tour, Solution sol) throws Exception {
+		int n = tour.length;
+		int start = 0;
+		while (tour[start] != 0) {
+			start++;
+		}
+		sol.setTour(tour, start);
+	}
+
+}
@@ -1,5 +1,7 @@
 package tsp.neighborhood;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import tsp.Instance;
@@ -46,6 +48,34 @@ abstract public class ANeighborhood {
 	/** Apply the neighborhood to get a neighbor */
 	public abstract List<Solution> getNeighborhood(Solution sol) throws Exception ;
 
+	/**
+	 * Lazy exploration of the neighborhood: the moves are generated one at a
+	 * time with their cost delta, no neighbor solution is built. The moves
+	 * are only valid while sol is not modified.
+	 */
+	public abstract Iterator<Move> getMoves(Solution sol) throws Exception ;
+
+	/**
+	 * Apply a move generated by {@link #getMoves(Solution)} on sol. The
+	 * objective value of sol is updated with the delta of the move.
+	 */
+	public abstract void apply(Solution sol, Move move) throws Exception ;
+
+	/**
+	 * Builds every neighbor of sol, applying each move of
+	 * {@link #getMoves(Solution)} on a copy of sol.
+	 */
+	protected List<Solution> materialize(Solution sol) throws Exception {
+		List<Solution> neighbors = new ArrayList<Solution>();
+		Iterator<Move> moves = getMoves(sol);
+		while (moves.hasNext()) {
+			Solution neighbor = sol.copy();
+			apply(neighbor, moves.next());
+			neighbors.add(neighbor);
+		}
+		return neighbors;
+	}
+
 
 	// -----------------------------
 	// ----- GETTERS / SETTERS -----
@@ -0,0 +1,90 @@
+package tsp.neighborhood;
+
+/**
+ * Descriptor of a move of a neighborhood, together with its cost delta.
+ *
+ * A move is described by three positions in the tour and a type, whose
+ * meaning is given by the neighborhood that created it (see
+ * {@link ANeighborhood#getMoves(tsp.Solution)}). A move is only valid for
+ * the solution it was generated from, as long as this solution is not
+ * modified.
+ *
+ * @version 2017
+ */
+public class Move {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** First position of the move. */
+	private int m_i;
+
+	/** Second position of the move. */
+	private int m_j;
+
+	/** Third position of the move. */
+	private int m_k;
+
+	/** Type of the move (reconnection type, reversal...). */
+	private int m_type;
+
+	/** Variation of the objective value if the move is applied. */
+	private long m_delta;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param i first position of the move
+	 * @param j second position of the move
+	 * @param k third position of the move
+	 * @param type type of the move
+	 * @param delta variation of the objective value if the move is applied
+	 */
+	public Move(int i, int j, int k, int type, long delta) {
+		m_i = i;
+		m_j = j;
+		m_k = k;
+		m_type = type;
+		m_delta = delta;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the first position of the move */
+	public int getI() {
+		return m_i;
+	}
+
+	/** @return the second position of the move */
+	public int getJ() {
+		return m_j;
+	}
+
+	/** @return the third position of the move */
+	public int getK() {
+		return m_k;
+	}
+
+	/** @return the type of the move */
+	public int getType() {
+		return m_type;
+	}
+
+	/** @return the variation of the objective value if the move is applied */
+	public long getDelta() {
+		return m_delta;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + m_i + "," + m_j + "," + m_k + ")[" + m_type + "] " + m_delta;
+	}
+}
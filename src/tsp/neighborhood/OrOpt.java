@@ -0,0 +1,156 @@
+package tsp.neighborhood;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import tsp.Instance;
+import tsp.Solution;
+
+/**
+ * Or-opt neighborhood: a segment of 1 to 3 consecutive cities is removed
+ * from the tour and inserted between two other consecutive cities, in its
+ * original or reversed order.
+ *
+ * A move is described by:
+ * 	- i : position of the first city of the segment (1 <= i, i+length-1 <= nbCities-1)
+ * 	- j : the segment is inserted between the cities at positions j and j+1
+ * 	- k : length of the segment
+ * 	- type : 1 if the segment is reversed, 0 otherwise
+ *
+ * The city at position 0 (and nbCities) is never moved.
+ *
+ * @version 2017
+ */
+public class OrOpt extends ANeighborhood {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Maximum length of the moved segments. */
+	private int m_maxLength;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public OrOpt(Instance instance) throws Exception {
+		this(instance, 3);
+	}
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 * @param maxLength maximum length of the moved segments
+	 */
+	public OrOpt(Instance instance, int maxLength) throws Exception {
+		super(instance, "Or-opt");
+		if (maxLength < 1) {
+			throw new Exception("Error OrOpt : the maximum segment length " + maxLength + " should be at least 1");
+		}
+		m_maxLength = maxLength;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public List<Solution> getNeighborhood(Solution sol) throws Exception {
+		return materialize(sol);
+	}
+
+	@Override
+	public Iterator<Move> getMoves(Solution sol) throws Exception {
+		final int n = m_instance.getNbCities();
+		final int[] tour = new int[n + 1];
+		sol.copyTourInto(tour);
+
+		return new Iterator<Move>() {
+			/** current segment length, start, insertion position and reversal */
+			private int m_length = 1;
+			private int m_start = 1;
+			private int m_insert = -1;
+			private int m_reversed = 1;
+			private Move m_next = advance();
+
+			/** @return the move after the current one, null if none */
+			private Move advance() {
+				while (m_length <= m_maxLength && m_length <= n - 3) {
+					// next (insertion, reversal) for the current segment
+					if (m_reversed == 0 && m_length > 1) {
+						m_reversed = 1;
+					} else {
+						m_reversed = 0;
+						m_insert++;
+						if (m_insert == m_start - 1) {
+							m_insert = m_start + m_length;
+						}
+						if (m_insert > n - 1) {
+							m_insert = -1;
+							m_reversed = 1;
+							m_start++;
+							if (m_start + m_length - 1 > n - 1) {
+								m_start = 1;
+								m_length++;
+							}
+							continue;
+						}
+					}
+					return new Move(m_start, m_insert, m_length, m_reversed, delta(tour, m_start, m_insert, m_length, m_reversed == 1));
+				}
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return m_next != null;
+			}
+
+			@Override
+			public Move next() {
+				if (m_next == null) {
+					throw new NoSuchElementException();
+				}
+				Move move = m_next;
+				m_next = advance();
+				return move;
+			}
+		};
+	}
+
+	/**
+	 * @return the variation of the tour length when the segment of length
+	 *         cities starting at position i is inserted after position j
+	 */
+	private long delta(int[] tour, int i, int j, int length, boolean reversed) {
+		int prev = tour[i - 1];
+		int s1 = tour[i];
+		int s2 = tour[i + length - 1];
+		int next = tour[i + length];
+		int a = tour[j];
+		int b = tour[j + 1];
+		long delta = m_instance.getDistancesUnchecked(prev, next)
+				- m_instance.getDistancesUnchecked(prev, s1)
+				- m_instance.getDistancesUnchecked(s2, next)
+				- m_instance.getDistancesUnchecked(a, b);
+		if (reversed) {
+			delta += m_instance.getDistancesUnchecked(a, s2) + m_instance.getDistancesUnchecked(s1, b);
+		} else {
+			delta += m_instance.getDistancesUnchecked(a, s1) + m_instance.getDistancesUnchecked(s2, b);
+		}
+		return delta;
+	}
+
+	@Override
+	public void apply(Solution sol, Move move) throws Exception {
+		sol.applyOrOptMove(move.getI(), move.getK(), move.getJ(), move.getType() == 1);
+	}
+}
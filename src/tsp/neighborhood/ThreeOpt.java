@@ -0,0 +1,182 @@
+package tsp.neighborhood;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import tsp.Instance;
+import tsp.Solution;
+
+/**
+ * Segment reversal 3-opt neighborhood.
+ *
+ * Three edges (c[i],c[i+1]), (c[j],c[j+1]) and (c[k],c[k+1]) with
+ * 0 <= i < j < k <= nbCities-1 are removed, which splits the route between
+ * positions i+1 and k in two segments A = c[i+1..j] and B = c[j+1..k]. They
+ * are reconnected in one of the four pure 3-opt ways (the type of the move):
+ * 	- 0 : B A
+ * 	- 1 : B A reversed
+ * 	- 2 : B reversed A
+ * 	- 3 : A reversed B reversed
+ *
+ * The neighborhood has O(nbCities^3) moves: it should be explored lazily with
+ * {@link #getMoves(Solution)}.
+ *
+ * @version 2017
+ */
+public class ThreeOpt extends ANeighborhood {
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param instance the instance of the problem
+	 */
+	public ThreeOpt(Instance instance) throws Exception {
+		super(instance, "3-opt");
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public List<Solution> getNeighborhood(Solution sol) throws Exception {
+		return materialize(sol);
+	}
+
+	@Override
+	public Iterator<Move> getMoves(Solution sol) throws Exception {
+		final int n = m_instance.getNbCities();
+		final int[] tour = new int[n + 1];
+		sol.copyTourInto(tour);
+
+		return new Iterator<Move>() {
+			/** current positions and reconnection type */
+			private int m_i = 0;
+			private int m_j = 1;
+			private int m_k = 2;
+			private int m_type = -1;
+			private Move m_next = advance();
+
+			/** @return the move after the current one, null if none */
+			private Move advance() {
+				if (n < 3) {
+					return null;
+				}
+				m_type++;
+				if (m_type == 4) {
+					m_type = 0;
+					m_k++;
+					if (m_k > n - 1) {
+						m_j++;
+						if (m_j > n - 2) {
+							m_i++;
+							if (m_i > n - 3) {
+								return null;
+							}
+							m_j = m_i + 1;
+						}
+						m_k = m_j + 1;
+					}
+				}
+				return new Move(m_i, m_j, m_k, m_type, delta(tour, m_i, m_j, m_k, m_type));
+			}
+
+			@Override
+			public boolean hasNext() {
+				return m_next != null;
+			}
+
+			@Override
+			public Move next() {
+				if (m_next == null) {
+					throw new NoSuchElementException();
+				}
+				Move move = m_next;
+				m_next = advance();
+				return move;
+			}
+		};
+	}
+
+	/** @return the variation of the tour length of the move (i, j, k, type) */
+	private long delta(int[] tour, int i, int j, int k, int type) {
+		int a = tour[i];
+		int b = tour[i + 1];
+		int c = tour[j];
+		int d = tour[j + 1];
+		int e = tour[k];
+		int f = tour[k + 1];
+		long delta = - m_instance.getDistancesUnchecked(a, b)
+				- m_instance.getDistancesUnchecked(c, d)
+				- m_instance.getDistancesUnchecked(e, f);
+		switch (type) {
+		case 0: // a-d..e-b..c-f
+			delta += m_instance.getDistancesUnchecked(a, d) + m_instance.getDistancesUnchecked(e, b) + m_instance.getDistancesUnchecked(c, f);
+			break;
+		case 1: // a-d..e-c..b-f
+			delta += m_instance.getDistancesUnchecked(a, d) + m_instance.getDistancesUnchecked(e, c) + m_instance.getDistancesUnchecked(b, f);
+			break;
+		case 2: // a-e..d-b..c-f
+			delta += m_instance.getDistancesUnchecked(a, e) + m_instance.getDistancesUnchecked(d, b) + m_instance.getDistancesUnchecked(c, f);
+			break;
+		default: // a-c..b-e..d-f
+			delta += m_instance.getDistancesUnchecked(a, c) + m_instance.getDistancesUnchecked(b, e) + m_instance.getDistancesUnchecked(d, f);
+			break;
+		}
+		return delta;
+	}
+
+	@Override
+	public void apply(Solution sol, Move move) throws Exception {
+		int i = move.getI();
+		int j = move.getJ();
+		int k = move.getK();
+		int type = move.getType();
+		if (type == 0) {
+			sol.applyDoubleBridgeMove(i, j, k);
+			return;
+		}
+		int lengthA = j - i;
+		int lengthB = k - j;
+
+		int[] segment = new int[lengthA + lengthB];
+		for (int p = 0; p < segment.length; p++) {
+			segment[p] = sol.getCityUnchecked(i + 1 + p);
+		}
+		int p = i + 1;
+		// first part of the reconnection
+		if (type == 3) {
+			for (int q = lengthA - 1; q >= 0; q--) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		} else if (type == 2) {
+			for (int q = lengthA + lengthB - 1; q >= lengthA; q--) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		} else {
+			for (int q = lengthA; q < lengthA + lengthB; q++) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		}
+		// second part of the reconnection
+		if (type == 3) {
+			for (int q = lengthA + lengthB - 1; q >= lengthA; q--) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		} else if (type == 1) {
+			for (int q = lengthA - 1; q >= 0; q--) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		} else {
+			for (int q = 0; q < lengthA; q++) {
+				sol.setCityPositionUnchecked(segment[q], p++);
+			}
+		}
+		sol.setObjectiveValue(sol.getObjectiveValue() + move.getDelta());
+	}
+}
@@ -0,0 +1,91 @@
+package tsp.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Ordering of points in the plane along a Hilbert curve.
+ *
+ * The bounding box of the points is divided in a grid of 2^{@link #BITS} x
+ * 2^{@link #BITS} cells, which are visited in the order of the Hilbert
+ * curve. Consecutive points in this order are close in the plane, so
+ * numbering points in this order gives nearby points nearby numbers.
+ *
+ * @version 2017
+ */
+public class HilbertCurve {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of bits of the grid coordinates. */
+	public static final int BITS = 16;
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * @param x the column of a cell, between 0 and 2^BITS - 1
+	 * @param y the row of a cell, between 0 and 2^BITS - 1
+	 * @return the rank of the cell along the Hilbert curve
+	 */
+	public static long index(int x, int y) {
+		int n = 1 << BITS;
+		long d = 0;
+		for (int s = n >>> 1; s > 0; s >>>= 1) {
+			int rx = ((x & s) != 0) ? 1 : 0;
+			int ry = ((y & s) != 0) ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			// rotation of the quadrant
+			if (ry == 0) {
+				if (rx == 1) {
+					x = n - 1 - x;
+					y = n - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Sorts points along the Hilbert curve of their bounding box. Points in
+	 * the same cell are sorted by increasing number.
+	 *
+	 * @param x x coordinates of the points
+	 * @param y y coordinates of the points
+	 * @return order[k] is the number of the k-th point along the curve
+	 */
+	public static int[] order(double[] x, double[] y) {
+		int n = x.length;
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+		}
+		// same scale on both axes, so that the cells are squares
+		double extent = Math.max(maxX - minX, maxY - minY);
+		double scale = (extent > 0) ? ((1 << BITS) - 1) / extent : 0;
+
+		// keys (index along the curve, point) packed in a long: 2*BITS + 31 bits
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			int cx = (int) ((x[i] - minX) * scale);
+			int cy = (int) ((y[i] - minY) * scale);
+			keys[i] = (index(cx, cy) << 31) | i;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[n];
+		for (int k = 0; k < n; k++) {
+			order[k] = (int) (keys[k] & Integer.MAX_VALUE);
+		}
+		return order;
+	}
+}
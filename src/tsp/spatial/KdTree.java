@@ -0,0 +1,417 @@
+package tsp.spatial;
+
+import java.util.Arrays;
+
+/**
+ * A static k-d tree over a set of points in dimension 2 or 3.
+ *
+ * The tree is stored implicitly in a permutation of the point indices: the
+ * node of a range [lo, hi) of the permutation is the point at the middle of
+ * the range, the left subtree is [lo, mid) and the right subtree is
+ * [mid + 1, hi). Small ranges are scanned linearly.
+ *
+ * Distances are the squared euclidean distances between the coordinates
+ * given to the constructor, the caller is responsible for choosing
+ * coordinates whose euclidean order matches the order of its own metric.
+ *
+ * Points can be removed from the tree (see {@link #remove(int)}), to find
+ * the nearest remaining point with {@link #nearestAlive(int)}: the number of
+ * remaining points of each subtree is maintained, so that the empty subtrees
+ * are skipped by the queries. Removals do not affect
+ * {@link #nearestNeighbors(int, int, int[])}.
+ *
+ * @version 2017
+ */
+public class KdTree {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Size under which a range of the tree is scanned linearly. */
+	private static final int BUCKET_SIZE = 8;
+
+	/** Dimension of the points. */
+	private int m_dim;
+
+	/** Number of points. */
+	private int m_nbPoints;
+
+	/** Coordinates: the coordinates of point i are m_coords[i*m_dim .. i*m_dim + m_dim - 1]. */
+	private double[] m_coords;
+
+	/** Points ordered as the implicit tree. */
+	private int[] m_perm;
+
+	/** Splitting dimension of the node stored at each index of m_perm. */
+	private byte[] m_splitDim;
+
+	/** m_position[p] is the index of point p in m_perm. */
+	private int[] m_position;
+
+	/** Number of points not removed in the subtree of the node stored at each index of m_perm. */
+	private int[] m_aliveCount;
+
+	/** m_removed[p] is `true` if point p is removed. */
+	private boolean[] m_removed;
+
+	/** Nearest point found by the current nearest alive query, -1 if none. */
+	private int m_bestPoint;
+
+	/** Squared distance of m_bestPoint. */
+	private double m_bestDist;
+
+	/** Bounded max-heap of the current k nearest neighbors query (points). */
+	private int[] m_heapPoints;
+
+	/** Bounded max-heap of the current k nearest neighbors query (squared distances). */
+	private double[] m_heapDist;
+
+	/** Number of elements in the heap. */
+	private int m_heapSize;
+
+	/** Capacity of the heap for the current query. */
+	private int m_heapCapacity;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Builds the tree.
+	 * @param coords the coordinates of the points, m_dim values per point
+	 * @param dim the dimension of the points
+	 */
+	public KdTree(double[] coords, int dim) {
+		m_dim = dim;
+		m_coords = coords;
+		m_nbPoints = coords.length / dim;
+		m_perm = new int[m_nbPoints];
+		m_splitDim = new byte[m_nbPoints];
+		for (int i = 0; i < m_nbPoints; i++) {
+			m_perm[i] = i;
+		}
+		build(0, m_nbPoints);
+		m_position = new int[m_nbPoints];
+		for (int i = 0; i < m_nbPoints; i++) {
+			m_position[m_perm[i]] = i;
+		}
+		m_aliveCount = new int[m_nbPoints];
+		m_removed = new boolean[m_nbPoints];
+		restoreAll();
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * Builds the subtree of the range [lo, hi): the range is split on the
+	 * dimension with the largest spread, around its median.
+	 */
+	private void build(int lo, int hi) {
+		while (hi - lo > BUCKET_SIZE) {
+			int dim = widestDimension(lo, hi);
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi - 1, mid, dim);
+			m_splitDim[mid] = (byte) dim;
+			build(lo, mid);
+			lo = mid + 1;
+		}
+	}
+
+	/** @return the dimension with the largest spread among the points of [lo, hi) */
+	private int widestDimension(int lo, int hi) {
+		int best = 0;
+		double bestSpread = -1;
+		for (int d = 0; d < m_dim; d++) {
+			double min = Double.MAX_VALUE;
+			double max = -Double.MAX_VALUE;
+			for (int p = lo; p < hi; p++) {
+				double v = m_coords[m_perm[p] * m_dim + d];
+				if (v < min) {
+					min = v;
+				}
+				if (v > max) {
+					max = v;
+				}
+			}
+			if (max - min > bestSpread) {
+				bestSpread = max - min;
+				best = d;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Partial sort of m_perm[lo..hi] (inclusive) such that the element at k
+	 * is the one of the sorted order on dimension dim (quickselect).
+	 */
+	private void select(int lo, int hi, int k, int dim) {
+		while (hi > lo) {
+			double pivot = m_coords[m_perm[(lo + hi) >>> 1] * m_dim + dim];
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (m_coords[m_perm[i] * m_dim + dim] < pivot) {
+					i++;
+				}
+				while (m_coords[m_perm[j] * m_dim + dim] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = m_perm[i];
+					m_perm[i] = m_perm[j];
+					m_perm[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Computes the k nearest points of point p (p itself excluded), sorted by
+	 * increasing distance. This method is not thread safe.
+	 *
+	 * @param p the query point
+	 * @param k the number of neighbors wanted (at most the number of points minus one)
+	 * @param result array of size at least k receiving the neighbors
+	 */
+	public void nearestNeighbors(int p, int k, int[] result) {
+		if (m_heapPoints == null || m_heapPoints.length < k) {
+			m_heapPoints = new int[k];
+			m_heapDist = new double[k];
+		}
+		m_heapSize = 0;
+		m_heapCapacity = k;
+		search(p, 0, m_nbPoints);
+
+		// heap sort: the farthest point goes to the end
+		for (int r = m_heapSize - 1; r >= 0; r--) {
+			result[r] = m_heapPoints[0];
+			m_heapSize--;
+			if (m_heapSize > 0) {
+				siftDown(m_heapPoints[m_heapSize], m_heapDist[m_heapSize]);
+			}
+		}
+	}
+
+	/** Recursive nearest neighbors search in the range [lo, hi). */
+	private void search(int p, int lo, int hi) {
+		int base = p * m_dim;
+		while (hi - lo > BUCKET_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			int q = m_perm[mid];
+			offer(p, q);
+			int dim = m_splitDim[mid];
+			double diff = m_coords[base + dim] - m_coords[q * m_dim + dim];
+			if (diff < 0) {
+				search(p, lo, mid);
+				if (m_heapSize == m_heapCapacity && diff * diff >= m_heapDist[0]) {
+					return;
+				}
+				lo = mid + 1;
+			} else {
+				search(p, mid + 1, hi);
+				if (m_heapSize == m_heapCapacity && diff * diff >= m_heapDist[0]) {
+					return;
+				}
+				hi = mid;
+			}
+		}
+		for (int i = lo; i < hi; i++) {
+			offer(p, m_perm[i]);
+		}
+	}
+
+	/** Inserts q in the heap of the current query if it is closer than the farthest point found. */
+	private void offer(int p, int q) {
+		if (p == q) {
+			return;
+		}
+		double dist = squaredDistance(p, q);
+		if (m_heapSize < m_heapCapacity) {
+			// sift up
+			int i = m_heapSize++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (m_heapDist[parent] >= dist) {
+					break;
+				}
+				m_heapPoints[i] = m_heapPoints[parent];
+				m_heapDist[i] = m_heapDist[parent];
+				i = parent;
+			}
+			m_heapPoints[i] = q;
+			m_heapDist[i] = dist;
+		} else if (dist < m_heapDist[0]) {
+			siftDown(q, dist);
+		}
+	}
+
+	/** Replaces the root of the heap by (q, dist) and restores the heap order. */
+	private void siftDown(int q, double dist) {
+		int i = 0;
+		int half = m_heapSize >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < m_heapSize && m_heapDist[child + 1] > m_heapDist[child]) {
+				child++;
+			}
+			if (m_heapDist[child] <= dist) {
+				break;
+			}
+			m_heapPoints[i] = m_heapPoints[child];
+			m_heapDist[i] = m_heapDist[child];
+			i = child;
+		}
+		m_heapPoints[i] = q;
+		m_heapDist[i] = dist;
+	}
+
+	/** Restores all the removed points. */
+	public void restoreAll() {
+		Arrays.fill(m_removed, false);
+		countAlive(0, m_nbPoints);
+	}
+
+	/** Sets m_aliveCount for the nodes of the range [lo, hi), all points being alive. */
+	private void countAlive(int lo, int hi) {
+		while (hi - lo > BUCKET_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			m_aliveCount[mid] = hi - lo;
+			countAlive(lo, mid);
+			lo = mid + 1;
+		}
+	}
+
+	/**
+	 * Removes a point from the tree, in O(log n). Removing a removed point
+	 * has no effect.
+	 * @param p the point
+	 */
+	public void remove(int p) {
+		if (m_removed[p]) {
+			return;
+		}
+		m_removed[p] = true;
+		int position = m_position[p];
+		int lo = 0;
+		int hi = m_nbPoints;
+		while (hi - lo > BUCKET_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			m_aliveCount[mid]--;
+			if (position == mid) {
+				return;
+			} else if (position < mid) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+	}
+
+	/**
+	 * @param p a point
+	 * @return `true` if p has been removed from the tree
+	 */
+	public boolean isRemoved(int p) {
+		return m_removed[p];
+	}
+
+	/**
+	 * Computes the nearest point of point p among the points not removed (p
+	 * itself excluded, whether it is removed or not). This method is not
+	 * thread safe.
+	 *
+	 * @param p the query point
+	 * @return the nearest remaining point, -1 if there is none
+	 */
+	public int nearestAlive(int p) {
+		m_bestPoint = -1;
+		m_bestDist = Double.MAX_VALUE;
+		searchAlive(p, 0, m_nbPoints);
+		return m_bestPoint;
+	}
+
+	/** Recursive nearest alive search in the range [lo, hi). */
+	private void searchAlive(int p, int lo, int hi) {
+		int base = p * m_dim;
+		while (hi - lo > BUCKET_SIZE) {
+			int mid = (lo + hi) >>> 1;
+			if (m_aliveCount[mid] == 0) {
+				return;
+			}
+			int q = m_perm[mid];
+			offerAlive(p, q);
+			int dim = m_splitDim[mid];
+			double diff = m_coords[base + dim] - m_coords[q * m_dim + dim];
+			if (diff < 0) {
+				searchAlive(p, lo, mid);
+				if (diff * diff >= m_bestDist) {
+					return;
+				}
+				lo = mid + 1;
+			} else {
+				searchAlive(p, mid + 1, hi);
+				if (diff * diff >= m_bestDist) {
+					return;
+				}
+				hi = mid;
+			}
+		}
+		for (int i = lo; i < hi; i++) {
+			offerAlive(p, m_perm[i]);
+		}
+	}
+
+	/** Keeps q as the result of the current nearest alive query if it is alive and closer than the best point found. */
+	private void offerAlive(int p, int q) {
+		if (p == q || m_removed[q]) {
+			return;
+		}
+		double dist = squaredDistance(p, q);
+		if (dist < m_bestDist || (dist == m_bestDist && q < m_bestPoint)) {
+			m_bestPoint = q;
+			m_bestDist = dist;
+		}
+	}
+
+	/** @return the squared euclidean distance between points p and q */
+	public double squaredDistance(int p, int q) {
+		double dist = 0;
+		int bp = p * m_dim;
+		int bq = q * m_dim;
+		for (int d = 0; d < m_dim; d++) {
+			double diff = m_coords[bp + d] - m_coords[bq + d];
+			dist += diff * diff;
+		}
+		return dist;
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of points in the tree */
+	public int getNbPoints() {
+		return m_nbPoints;
+	}
+
+	/** @return the dimension of the points */
+	public int getDimension() {
+		return m_dim;
+	}
+}
@@ -0,0 +1,204 @@
+package tsp.tour;
+
+import java.util.Arrays;
+
+import tsp.Solution;
+
+/**
+ * This is the abstract class for the tour representations used by the local
+ * search engines.
+ *
+ * A tour is a cyclic sequence of the cities 0..nbCities-1. It is explored
+ * with {@link #next(int)}, {@link #prev(int)} and
+ * {@link #between(int, int, int)} and modified with
+ * {@link #make2OptMove(int, int, int, int)}. Every other move (Or-opt,
+ * 3-opt, Lin-Kernighan steps...) is written as a sequence of 2-opt moves.
+ *
+ * The orientation of the tour is not fixed: an implementation may reverse
+ * either side of the tour when applying a 2-opt move, so the callers must
+ * not assume that next() keeps its direction across moves.
+ *
+ * The 2-opt moves can be recorded in a journal (see {@link #startJournal()})
+ * and undone with {@link #rollback()}, which lets a caller try a
+ * perturbation and its re-optimization without copying the tour.
+ *
+ * @version 2017
+ */
+abstract public class ATour {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of cities from which {@link #create(int)} uses a {@link TwoLevelListTour}. */
+	public static final int TWO_LEVEL_THRESHOLD = 10000;
+
+	/** Number of cities in the tour. */
+	protected int m_nbCities;
+
+	/** Journal of the 2-opt moves: 4 cities per move, null if not recording. */
+	private int[] m_journal;
+
+	/** Number of ints used in m_journal. */
+	private int m_journalSize;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities in the tour
+	 */
+	public ATour(int nbCities) {
+		m_nbCities = nbCities;
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * @return an empty tour of nbCities cities: an {@link ArrayTour} for small
+	 *         instances, whose O(n) reversals are the fastest in practice, and a
+	 *         {@link TwoLevelListTour} from {@link #TWO_LEVEL_THRESHOLD} cities.
+	 */
+	public static ATour create(int nbCities) {
+		if (nbCities >= TWO_LEVEL_THRESHOLD) {
+			return new TwoLevelListTour(nbCities);
+		}
+		return new ArrayTour(nbCities);
+	}
+
+	/**
+	 * Set the tour from an array
+	 * @param cities an open tour: each city exactly once, the closing city is implicit
+	 */
+	public abstract void setTour(int[] cities);
+
+	/**
+	 * Set the tour from the positions 0..nbCities-1 of a solution
+	 * @param sol a solution of the same instance
+	 */
+	public void setTour(Solution sol) throws Exception {
+		int[] cities = new int[m_nbCities];
+		sol.copyTourInto(cities);
+		setTour(cities);
+	}
+
+	/**
+	 * Write the tour in a solution, starting and ending with city 0.
+	 * The objective value of the solution is not modified.
+	 * @param sol a solution of the same instance
+	 */
+	public void toSolution(Solution sol) throws Exception {
+		int[] cities = new int[m_nbCities];
+		toArray(cities);
+		sol.setTour(cities);
+	}
+
+	/** @return the city after city c in the current orientation */
+	public abstract int next(int c);
+
+	/** @return the city before city c in the current orientation */
+	public abstract int prev(int c);
+
+	/**
+	 * @return `true` if b lies on the path going from a to c following
+	 *         {@link #next(int)} (a and c included).
+	 */
+	public abstract boolean between(int a, int b, int c);
+
+	/**
+	 * Reverse the path going from city from to city to following
+	 * {@link #next(int)}. An implementation may reverse the complementary path
+	 * instead, the resulting cyclic tour is the same.
+	 */
+	protected abstract void reversePath(int from, int to);
+
+	/**
+	 * Apply the 2-opt move removing the edges (a,b) and (c,d) and adding the
+	 * edges (a,c) and (b,d). b and d must be on the same side of a and c:
+	 * either b = next(a) and d = next(c), or b = prev(a) and d = prev(c).
+	 *
+	 * After the move, c and d are on the same side of a and b, so that the
+	 * move (a,c,b,d) undoes the move (a,b,c,d).
+	 */
+	public void make2OptMove(int a, int b, int c, int d) {
+		if (next(a) == b) {
+			reversePath(b, c);
+		} else {
+			reversePath(a, d);
+		}
+		if (m_journal != null) {
+			if (m_journalSize + 4 > m_journal.length) {
+				m_journal = Arrays.copyOf(m_journal, 2 * m_journal.length);
+			}
+			m_journal[m_journalSize++] = a;
+			m_journal[m_journalSize++] = b;
+			m_journal[m_journalSize++] = c;
+			m_journal[m_journalSize++] = d;
+		}
+	}
+
+	/**
+	 * Start recording the 2-opt moves. The journal is emptied if it was
+	 * already recording.
+	 */
+	public void startJournal() {
+		if (m_journal == null) {
+			m_journal = new int[256];
+		}
+		m_journalSize = 0;
+	}
+
+	/** Empty the journal: the recorded moves can no longer be undone. */
+	public void commit() {
+		m_journalSize = 0;
+	}
+
+	/** Undo the moves recorded since the last {@link #startJournal()} or {@link #commit()}. */
+	public void rollback() {
+		int[] journal = m_journal;
+		m_journal = null;
+		while (m_journalSize > 0) {
+			int d = journal[--m_journalSize];
+			int c = journal[--m_journalSize];
+			int b = journal[--m_journalSize];
+			int a = journal[--m_journalSize];
+			make2OptMove(a, c, b, d);
+		}
+		m_journal = journal;
+	}
+
+	/** Stop recording the 2-opt moves. */
+	public void stopJournal() {
+		m_journal = null;
+		m_journalSize = 0;
+	}
+
+	/**
+	 * Copy the tour in an array, starting with city 0 and following
+	 * {@link #next(int)}.
+	 * @param cities array of size at least nbCities
+	 */
+	public void toArray(int[] cities) {
+		int c = 0;
+		for (int p = 0; p < m_nbCities; p++) {
+			cities[p] = c;
+			c = next(c);
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of cities in the tour */
+	public int size() {
+		return m_nbCities;
+	}
+}
@@ -0,0 +1,135 @@
+package tsp.tour;
+
+/**
+ * Tour stored in an array with its inverse permutation.
+ *
+ * next, prev and between are O(1). A 2-opt move reverses the shorter of the
+ * two paths it may reverse, that is at most nbCities/2 cities.
+ *
+ * @version 2017
+ */
+public class ArrayTour extends ATour {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** m_tour[p] is the city at position p. */
+	private int[] m_tour;
+
+	/** m_positions[c] is the position of city c in m_tour. */
+	private int[] m_positions;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities in the tour
+	 */
+	public ArrayTour(int nbCities) {
+		super(nbCities);
+		m_tour = new int[nbCities];
+		m_positions = new int[nbCities];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public void setTour(int[] cities) {
+		for (int p = 0; p < m_nbCities; p++) {
+			m_tour[p] = cities[p];
+			m_positions[cities[p]] = p;
+		}
+	}
+
+	@Override
+	public int next(int c) {
+		int p = m_positions[c] + 1;
+		return m_tour[(p == m_nbCities) ? 0 : p];
+	}
+
+	@Override
+	public int prev(int c) {
+		int p = m_positions[c];
+		return m_tour[(p == 0) ? m_nbCities - 1 : p - 1];
+	}
+
+	@Override
+	public boolean between(int a, int b, int c) {
+		int pa = m_positions[a];
+		int pb = m_positions[b];
+		int pc = m_positions[c];
+		if (pa <= pc) {
+			return (pa <= pb) && (pb <= pc);
+		}
+		return (pb >= pa) || (pb <= pc);
+	}
+
+	@Override
+	protected void reversePath(int from, int to) {
+		reverse(m_tour, m_positions, m_positions[from], m_positions[to]);
+	}
+
+	@Override
+	public void toArray(int[] cities) {
+		int start = m_positions[0];
+		System.arraycopy(m_tour, start, cities, 0, m_nbCities - start);
+		System.arraycopy(m_tour, 0, cities, m_nbCities - start, start);
+	}
+
+	/**
+	 * Reverse the cyclic range of positions [from, to] of tour, or the
+	 * complementary range if it is shorter (both give the same tour).
+	 * The inverse permutation pos is kept up to date.
+	 *
+	 * @param tour the tour
+	 * @param pos the positions of the cities in tour
+	 * @param from first position of the range
+	 * @param to last position of the range
+	 */
+	public static void reverse(int[] tour, int[] pos, int from, int to) {
+		int n = tour.length;
+		int length = to - from;
+		if (length < 0) {
+			length += n;
+		}
+		length++;
+		if (2 * length > n) {
+			int newFrom = (to + 1 == n) ? 0 : to + 1;
+			to = (from == 0) ? n - 1 : from - 1;
+			from = newFrom;
+			length = n - length;
+		}
+		for (int k = length / 2; k > 0; k--) {
+			int ci = tour[from];
+			int cj = tour[to];
+			tour[from] = cj;
+			pos[cj] = from;
+			tour[to] = ci;
+			pos[ci] = to;
+			from = (from + 1 == n) ? 0 : from + 1;
+			to = (to == 0) ? n - 1 : to - 1;
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the position of city c in the underlying array */
+	public int getPosition(int c) {
+		return m_positions[c];
+	}
+
+	/** @return the city at position p of the underlying array */
+	public int getCity(int p) {
+		return m_tour[p];
+	}
+}
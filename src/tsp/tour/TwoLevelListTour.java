@@ -0,0 +1,505 @@
+package tsp.tour;
+
+/**
+ * Two-level doubly-linked list tour (Fredman, Johnson, McGeoch and Ostheimer).
+ *
+ * The tour is cut into segments of about sqrt(nbCities) consecutive cities.
+ * Inside a segment, the cities are doubly linked and numbered with
+ * consecutive ids; the segments themselves form a doubly-linked cyclic list
+ * ordered by rank. Each segment has a reversal bit telling whether the tour
+ * goes through it by increasing or decreasing ids.
+ *
+ * next, prev and between are O(1). Reversing a path splits at most two
+ * segments so that the path is made of whole segments, then reverses the
+ * order of these segments and flips their reversal bits (or does the same on
+ * the complementary path if it has fewer segments). Small neighboring
+ * segments are merged back, so the number of segments stays O(sqrt(n)) and
+ * a reversal costs O(sqrt(n)) instead of O(n) for {@link ArrayTour}.
+ *
+ * @version 2017
+ */
+public class TwoLevelListTour extends ATour {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Target size of the segments. */
+	private int m_groupSize;
+
+	/** Ids are renumbered when they leave [-ID_LIMIT, ID_LIMIT]. */
+	private static final int ID_LIMIT = 1 << 29;
+
+	// --- cities ---
+
+	/** Segment of each city. */
+	private int[] m_parent;
+
+	/** Id of each city, consecutive inside a segment. */
+	private int[] m_id;
+
+	/** Neighbor with id+1 in the same segment, -1 if none. */
+	private int[] m_up;
+
+	/** Neighbor with id-1 in the same segment, -1 if none. */
+	private int[] m_down;
+
+	// --- segments ---
+
+	/** Number of segments in the tour. */
+	private int m_nbSegments;
+
+	/** `true` if the tour goes through the segment by decreasing ids. */
+	private boolean[] m_reversed;
+
+	/** City with the smallest id of each segment. */
+	private int[] m_low;
+
+	/** City with the greatest id of each segment. */
+	private int[] m_high;
+
+	/** Number of cities of each segment. */
+	private int[] m_size;
+
+	/** Next segment in the tour. */
+	private int[] m_nextSegment;
+
+	/** Previous segment in the tour. */
+	private int[] m_prevSegment;
+
+	/** Rank of each segment in the tour, from 0 to m_nbSegments-1. */
+	private int[] m_rank;
+
+	/** Stack of the unused segments. */
+	private int[] m_freeSegments;
+
+	/** Number of unused segments. */
+	private int m_nbFreeSegments;
+
+	/** Buffer of cities or segments. */
+	private int[] m_buffer;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param nbCities the number of cities in the tour
+	 */
+	public TwoLevelListTour(int nbCities) {
+		super(nbCities);
+		m_groupSize = Math.max(8, (int) Math.ceil(Math.sqrt(nbCities)));
+		m_parent = new int[nbCities];
+		m_id = new int[nbCities];
+		m_up = new int[nbCities];
+		m_down = new int[nbCities];
+		m_reversed = new boolean[nbCities];
+		m_low = new int[nbCities];
+		m_high = new int[nbCities];
+		m_size = new int[nbCities];
+		m_nextSegment = new int[nbCities];
+		m_prevSegment = new int[nbCities];
+		m_rank = new int[nbCities];
+		m_freeSegments = new int[nbCities];
+		m_buffer = new int[nbCities];
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	@Override
+	public void setTour(int[] cities) {
+		m_nbSegments = (m_nbCities + m_groupSize - 1) / m_groupSize;
+		for (int s = 0; s < m_nbSegments; s++) {
+			int from = s * m_groupSize;
+			int to = Math.min(m_nbCities, from + m_groupSize) - 1;
+			m_reversed[s] = false;
+			m_low[s] = cities[from];
+			m_high[s] = cities[to];
+			m_size[s] = to - from + 1;
+			m_nextSegment[s] = (s + 1 == m_nbSegments) ? 0 : s + 1;
+			m_prevSegment[s] = (s == 0) ? m_nbSegments - 1 : s - 1;
+			m_rank[s] = s;
+			for (int p = from; p <= to; p++) {
+				int c = cities[p];
+				m_parent[c] = s;
+				m_id[c] = p - from;
+				m_down[c] = (p == from) ? -1 : cities[p - 1];
+				m_up[c] = (p == to) ? -1 : cities[p + 1];
+			}
+		}
+		m_nbFreeSegments = 0;
+		for (int s = m_nbCities - 1; s >= m_nbSegments; s--) {
+			m_freeSegments[m_nbFreeSegments++] = s;
+		}
+	}
+
+	@Override
+	public int next(int c) {
+		int s = m_parent[c];
+		int n = m_reversed[s] ? m_down[c] : m_up[c];
+		return (n >= 0) ? n : head(m_nextSegment[s]);
+	}
+
+	@Override
+	public int prev(int c) {
+		int s = m_parent[c];
+		int p = m_reversed[s] ? m_up[c] : m_down[c];
+		return (p >= 0) ? p : tail(m_prevSegment[s]);
+	}
+
+	@Override
+	public boolean between(int a, int b, int c) {
+		long ka = key(a);
+		long kb = key(b);
+		long kc = key(c);
+		if (ka <= kc) {
+			return (ka <= kb) && (kb <= kc);
+		}
+		return (kb >= ka) || (kb <= kc);
+	}
+
+	/** @return a key increasing along the tour from the head of the segment of rank 0 */
+	private long key(int c) {
+		int s = m_parent[c];
+		long offset = m_reversed[s] ? -m_id[c] : m_id[c];
+		return ((long) m_rank[s] << 32) + offset + (1L << 31);
+	}
+
+	/** @return the first city of segment s in the tour order */
+	private int head(int s) {
+		return m_reversed[s] ? m_high[s] : m_low[s];
+	}
+
+	/** @return the last city of segment s in the tour order */
+	private int tail(int s) {
+		return m_reversed[s] ? m_low[s] : m_high[s];
+	}
+
+	/** @return `true` if a is before b, or equal to b, in their common segment */
+	private boolean beforeInSegment(int a, int b) {
+		return m_reversed[m_parent[a]] ? m_id[a] >= m_id[b] : m_id[a] <= m_id[b];
+	}
+
+	@Override
+	protected void reversePath(int from, int to) {
+		if (from == to) {
+			return;
+		}
+		if (m_parent[from] == m_parent[to]) {
+			if (beforeInSegment(from, to)) {
+				reverseInSegment(from, to);
+			} else if (next(to) != from) {
+				// the path wraps around the tour: its complement is inside the segment
+				reverseInSegment(next(to), prev(from));
+			}
+			return;
+		}
+
+		// the path must be made of whole segments
+		splitBefore(from);
+		int afterTo = next(to);
+		if (m_parent[afterTo] == m_parent[to]) {
+			splitBefore(afterTo);
+		}
+		int first = m_parent[from];
+		int last = m_parent[to];
+		int count = m_rank[last] - m_rank[first];
+		if (count < 0) {
+			count += m_nbSegments;
+		}
+		count++;
+		if (2 * count > m_nbSegments) {
+			if (count == m_nbSegments) {
+				// the whole tour: reversing it gives the same tour
+				return;
+			}
+			int newFirst = m_nextSegment[last];
+			last = m_prevSegment[first];
+			first = newFirst;
+			count = m_nbSegments - count;
+		}
+		reverseSegments(first, last, count);
+		if (m_nbSegments > 4 * (m_nbCities / m_groupSize + 1)) {
+			// too many small segments: rebuild balanced segments
+			toArray(m_buffer);
+			setTour(m_buffer);
+		}
+	}
+
+	/**
+	 * Reverse the sequence of count segments going from first to last and
+	 * flip their reversal bits, then merge the small segments at both ends.
+	 */
+	private void reverseSegments(int first, int last, int count) {
+		int before = m_prevSegment[first];
+		int after = m_nextSegment[last];
+		int rank = m_rank[first];
+		int s = first;
+		for (int i = 0; i < count; i++) {
+			m_buffer[i] = s;
+			s = m_nextSegment[s];
+		}
+		// new order: m_buffer[count-1] ... m_buffer[0]
+		int previous = before;
+		for (int i = count - 1; i >= 0; i--) {
+			s = m_buffer[i];
+			m_reversed[s] = !m_reversed[s];
+			m_prevSegment[s] = previous;
+			m_nextSegment[previous] = s;
+			m_rank[s] = rank;
+			rank = (rank + 1 == m_nbSegments) ? 0 : rank + 1;
+			previous = s;
+		}
+		m_nextSegment[previous] = after;
+		m_prevSegment[after] = previous;
+
+		// the segments may be merged: the two new junctions are located by their cities
+		int firstHead = head(m_buffer[count - 1]);
+		int afterHead = head(after);
+		mergeIfSmall(m_prevSegment[m_parent[afterHead]]);
+		mergeIfSmall(m_prevSegment[m_parent[firstHead]]);
+	}
+
+	/**
+	 * Reverse the path from..to, both cities being in the same segment with
+	 * from before to.
+	 */
+	private void reverseInSegment(int from, int to) {
+		int s = m_parent[from];
+		// low and high ends of the path in the id order
+		int lo = m_reversed[s] ? to : from;
+		int hi = m_reversed[s] ? from : to;
+		int below = m_down[lo];
+		int above = m_up[hi];
+		int idLow = m_id[lo];
+		int length = 0;
+		for (int c = lo; c != above; c = m_up[c]) {
+			m_buffer[length++] = c;
+		}
+		// m_buffer[length-1] gets the smallest id
+		int previous = below;
+		for (int i = length - 1; i >= 0; i--) {
+			int c = m_buffer[i];
+			m_id[c] = idLow + (length - 1 - i);
+			m_down[c] = previous;
+			if (previous >= 0) {
+				m_up[previous] = c;
+			}
+			previous = c;
+		}
+		m_up[previous] = above;
+		if (above >= 0) {
+			m_down[above] = previous;
+		}
+		if (below < 0) {
+			m_low[s] = m_buffer[length - 1];
+		}
+		if (above < 0) {
+			m_high[s] = m_buffer[0];
+		}
+	}
+
+	/**
+	 * Split the segment of c so that c becomes the first city of a segment in
+	 * the tour order. The smaller part of the segment goes to a new segment.
+	 */
+	private void splitBefore(int c) {
+		int s = m_parent[c];
+		if (head(s) == c) {
+			return;
+		}
+		boolean reversed = m_reversed[s];
+		// the part before c (tour order) is on the down side of c if not reversed
+		int sizeBefore = reversed ? m_id[m_high[s]] - m_id[c] : m_id[c] - m_id[m_low[s]];
+		int sizeFrom = m_size[s] - sizeBefore;
+		int t = m_freeSegments[--m_nbFreeSegments];
+		m_reversed[t] = reversed;
+
+		// cut the links between the part before c and c
+		int lastBefore = reversed ? m_up[c] : m_down[c];
+		if (reversed) {
+			m_up[c] = -1;
+			m_down[lastBefore] = -1;
+		} else {
+			m_down[c] = -1;
+			m_up[lastBefore] = -1;
+		}
+
+		if (sizeBefore <= sizeFrom) {
+			// the part before c moves to t, inserted before s
+			int firstBefore = head(s);
+			moveCities(firstBefore, sizeBefore, t);
+			if (reversed) {
+				m_high[t] = firstBefore;
+				m_low[t] = lastBefore;
+				m_high[s] = c;
+			} else {
+				m_low[t] = firstBefore;
+				m_high[t] = lastBefore;
+				m_low[s] = c;
+			}
+			m_size[t] = sizeBefore;
+			m_size[s] = sizeFrom;
+			insertSegmentBefore(t, s);
+		} else {
+			// the part starting at c moves to t, inserted after s
+			int lastFrom = tail(s);
+			moveCities(c, sizeFrom, t);
+			if (reversed) {
+				m_high[t] = c;
+				m_low[t] = lastFrom;
+				m_low[s] = lastBefore;
+			} else {
+				m_low[t] = c;
+				m_high[t] = lastFrom;
+				m_high[s] = lastBefore;
+			}
+			m_size[t] = sizeFrom;
+			m_size[s] = sizeBefore;
+			insertSegmentBefore(t, m_nextSegment[s]);
+		}
+	}
+
+	/** Set the parent of count cities starting from c (linked inside a segment) to t. */
+	private void moveCities(int c, int count, int t) {
+		boolean reversed = m_reversed[t];
+		for (int i = 0; i < count; i++) {
+			m_parent[c] = t;
+			c = reversed ? m_down[c] : m_up[c];
+		}
+	}
+
+	/** Insert the unused segment t before segment s in the tour and renumber the ranks. */
+	private void insertSegmentBefore(int t, int s) {
+		int p = m_prevSegment[s];
+		m_nextSegment[p] = t;
+		m_prevSegment[t] = p;
+		m_nextSegment[t] = s;
+		m_prevSegment[s] = t;
+		m_nbSegments++;
+		renumberRanks(t);
+	}
+
+	/** Renumber the ranks of the segments starting from s (which keeps its rank). */
+	private void renumberRanks(int s) {
+		int rank = m_rank[s];
+		if (rank >= m_nbSegments) {
+			rank = 0;
+		}
+		for (int i = 0; i < m_nbSegments; i++) {
+			m_rank[s] = rank;
+			rank = (rank + 1 == m_nbSegments) ? 0 : rank + 1;
+			s = m_nextSegment[s];
+		}
+	}
+
+	/**
+	 * Merge segment s with the next segment in the tour if their total size
+	 * does not exceed the group size. The cities of the smaller one move to
+	 * the other one.
+	 */
+	private void mergeIfSmall(int s) {
+		int t = m_nextSegment[s];
+		if (s == t || m_size[s] + m_size[t] > m_groupSize) {
+			return;
+		}
+		int kept;
+		int removed;
+		if (m_size[s] >= m_size[t]) {
+			// append the cities of t after the tail of s
+			kept = s;
+			removed = t;
+			int c = head(t);
+			for (int i = m_size[t]; i > 0; i--) {
+				int following = m_reversed[t] ? m_down[c] : m_up[c];
+				appendAfterTail(s, c);
+				c = following;
+			}
+		} else {
+			// prepend the cities of s before the head of t
+			kept = t;
+			removed = s;
+			int c = tail(s);
+			for (int i = m_size[s]; i > 0; i--) {
+				int preceding = m_reversed[s] ? m_up[c] : m_down[c];
+				prependBeforeHead(t, c);
+				c = preceding;
+			}
+		}
+		m_size[kept] += m_size[removed];
+		// remove the empty segment from the tour
+		int p = m_prevSegment[removed];
+		int n = m_nextSegment[removed];
+		m_nextSegment[p] = n;
+		m_prevSegment[n] = p;
+		m_freeSegments[m_nbFreeSegments++] = removed;
+		m_nbSegments--;
+		if (Math.abs(m_id[m_low[kept]]) > ID_LIMIT || Math.abs(m_id[m_high[kept]]) > ID_LIMIT) {
+			renumberIds(kept);
+		}
+		renumberRanks((m_rank[p] < m_rank[kept] || p == kept) ? p : kept);
+	}
+
+	/** Add city c at the end of segment s in the tour order. */
+	private void appendAfterTail(int s, int c) {
+		m_parent[c] = s;
+		if (m_reversed[s]) {
+			int low = m_low[s];
+			m_id[c] = m_id[low] - 1;
+			m_up[c] = low;
+			m_down[c] = -1;
+			m_down[low] = c;
+			m_low[s] = c;
+		} else {
+			int high = m_high[s];
+			m_id[c] = m_id[high] + 1;
+			m_down[c] = high;
+			m_up[c] = -1;
+			m_up[high] = c;
+			m_high[s] = c;
+		}
+	}
+
+	/** Add city c at the beginning of segment s in the tour order. */
+	private void prependBeforeHead(int s, int c) {
+		m_parent[c] = s;
+		if (m_reversed[s]) {
+			int high = m_high[s];
+			m_id[c] = m_id[high] + 1;
+			m_down[c] = high;
+			m_up[c] = -1;
+			m_up[high] = c;
+			m_high[s] = c;
+		} else {
+			int low = m_low[s];
+			m_id[c] = m_id[low] - 1;
+			m_up[c] = low;
+			m_down[c] = -1;
+			m_down[low] = c;
+			m_low[s] = c;
+		}
+	}
+
+	/** Renumber the ids of segment s from 0. */
+	private void renumberIds(int s) {
+		int id = 0;
+		for (int c = m_low[s]; c >= 0; c = m_up[c]) {
+			m_id[c] = id++;
+		}
+	}
+
+
+	// -----------------------------
+	// ----- GETTERS / SETTERS -----
+	// -----------------------------
+
+	/** @return the number of segments currently used */
+	public int getNbSegments() {
+		return m_nbSegments;
+	}
+}
@@ -0,0 +1,252 @@
+package tsp.distance;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import tsp.Instance;
+import tsp.InstanceOptions;
+
+/**
+ * Checks that the kernels of {@link DistanceKernels}, scalar and Vector API
+ * (when they are available), give exactly the distances of
+ * {@link EuclideanDistances#distance(double, double, double, double)} and
+ * {@link GeoDistances#distance(double, double, double, double)} for the path
+ * lengths, on random cities, on cities whose distances are
+ * half-integers, on equal and antipodal GEO cities, and on the coordinates
+ * of the instances of a directory.
+ *
+ * Usage: java --add-modules jdk.incubator.vector -cp bin tsp.distance.DistanceKernelsCheck [instanceDirectory]
+ *
+ * The exit status is 1 if a kernel gives a different distance.
+ *
+ * @version 2017
+ */
+public class DistanceKernelsCheck {
+
+	// -----------------------------
+	// ----- ATTRIBUTS -------------
+	// -----------------------------
+
+	/** Number of random cities per set. */
+	private static final int NB_CITIES = 2000;
+
+	/** Number of random pairs of cities checked one at a time per set. */
+	private static final int NB_PAIRS = 20000;
+
+	/** The kernels to check. */
+	private List<DistanceKernels> m_kernels;
+
+	/** Random numbers generator, with a fixed seed. */
+	private SplittableRandom m_random;
+
+	/** Number of distances compared. */
+	private long m_nbChecks;
+
+	/** Number of differences found. */
+	private long m_nbErrors;
+
+
+	// -----------------------------
+	// ----- CONSTRUCTOR -----------
+	// -----------------------------
+
+	/**
+	 * Constructor
+	 * @param kernels the kernels to check
+	 */
+	public DistanceKernelsCheck(List<DistanceKernels> kernels) {
+		m_kernels = kernels;
+		m_random = new SplittableRandom(2017);
+	}
+
+
+	// -----------------------------
+	// ----- METHODS ---------------
+	// -----------------------------
+
+	/**
+	 * @param args the directory of the instances to check (optional)
+	 */
+	public static void main(String[] args) throws Exception {
+		List<DistanceKernels> kernels = new ArrayList<DistanceKernels>();
+		kernels.add(new DistanceKernels());
+		DistanceKernels vector = DistanceKernels.createVectorKernels();
+		if (vector != null) {
+			kernels.add(vector);
+		} else {
+			System.out.println("The Vector API kernels are not available: only the scalar kernels are checked.");
+		}
+		DistanceKernelsCheck check = new DistanceKernelsCheck(kernels);
+		check.checkRandomSets();
+		if (args.length > 0) {
+			check.checkInstances(new File(args[0]));
+		}
+		for (DistanceKernels k : kernels) {
+			System.out.println("checked: " + k.getName());
+		}
+		System.out.println(check.m_nbChecks + " comparisons, " + check.m_nbErrors + " differences");
+		System.exit(check.m_nbErrors == 0 ? 0 : 1);
+	}
+
+	/** Checks the kernels on random sets of cities. */
+	private void checkRandomSets() {
+		int n = NB_CITIES;
+		double[] x = new double[n];
+		double[] y = new double[n];
+
+		// real coordinates of several magnitudes
+		for (double scale : new double[] { 1.0, 1e3, 1e6, 1e9 }) {
+			for (int i = 0; i < n; i++) {
+				x[i] = m_random.nextDouble() * scale;
+				y[i] = m_random.nextDouble() * scale;
+			}
+			checkEuclidean("random " + scale, x, y);
+		}
+		// multiples of 0.5 on a small grid: many distances are half-integers (1.5, 2 -> 2.5)
+		for (int i = 0; i < n; i++) {
+			x[i] = 0.5 * m_random.nextInt(40);
+			y[i] = 0.5 * m_random.nextInt(40);
+		}
+		checkEuclidean("half-integer grid", x, y);
+		// integer coordinates with many equal cities
+		for (int i = 0; i < n; i++) {
+			x[i] = m_random.nextInt(10);
+			y[i] = m_random.nextInt(10);
+		}
+		checkEuclidean("integer grid", x, y);
+
+		// GEO: random degrees, then equal, close and antipodal cities
+		for (int i = 0; i < n; i++) {
+			x[i] = m_random.nextDouble() * 360.0 - 180.0;
+			y[i] = m_random.nextDouble() * 180.0 - 90.0;
+		}
+		checkGeo("random degrees", x, y);
+		for (int i = 0; i < n; i += 4) {
+			x[i + 1] = x[i];
+			y[i + 1] = y[i];
+			x[i + 2] = x[i] + 1e-7;
+			y[i + 2] = y[i];
+			x[i + 3] = (x[i] > 0) ? x[i] - 180.0 : x[i] + 180.0;
+			y[i + 3] = -y[i];
+		}
+		checkGeo("equal, close and antipodal", x, y);
+	}
+
+	/** Checks the kernels on the coordinates of the instances of a directory. */
+	private void checkInstances(File directory) throws Exception {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".tsp"));
+		if (files == null) {
+			throw new Exception("Error DistanceKernelsCheck : " + directory + " is not a directory");
+		}
+		InstanceOptions options = new InstanceOptions();
+		options.setEchoHeader(false);
+		for (File file : files) {
+			Instance instance;
+			try {
+				instance = new Instance(file.getPath(), 0, options);
+			} catch (Exception e) {
+				// not a coordinates file
+				continue;
+			}
+			// the prefixes of the paths take a quadratic time on the instances too large for a matrix
+			if (instance.getDistanceMatrix() instanceof ACoordinateDistances || instance.getNbCities() < 2) {
+				continue;
+			}
+			int n = instance.getNbCities();
+			double[] x = new double[n];
+			double[] y = new double[n];
+			for (int i = 0; i < n; i++) {
+				x[i] = instance.getX(i);
+				y[i] = instance.getY(i);
+			}
+			if (instance.m_isGeographic()) {
+				// the displayed coordinates are converted back to degrees, as for the k-d tree of Instance
+				for (int i = 0; i < n; i++) {
+					x[i] = x[i] * (360.0/680) - 180;
+					y[i] = -y[i] * (360.0/680) - 180;
+				}
+				checkGeo(file.getName(), x, y);
+			} else {
+				checkEuclidean(file.getName(), x, y);
+			}
+		}
+	}
+
+	/** Checks the EUC_2D path kernels on the cities (x[i], y[i]). */
+	private void checkEuclidean(String name, double[] x, double[] y) {
+		int n = x.length;
+		for (DistanceKernels kernels : m_kernels) {
+			checkPaths(name, kernels, n, (i, j) -> EuclideanDistances.distance(x[i], y[i], x[j], y[j]),
+					(tour, nbEdges) -> kernels.euclideanLength(x, y, tour, nbEdges));
+		}
+	}
+
+	/** Checks the GEO path kernels on the cities (x[i], y[i]), in degrees. */
+	private void checkGeo(String name, double[] x, double[] y) {
+		int n = x.length;
+		double[] unitVectors = new GeoDistances(x, y).getUnitVectors();
+		for (DistanceKernels kernels : m_kernels) {
+			checkPaths(name, kernels, n, (i, j) -> (i == j) ? 0 : GeoDistances.distance(x[i], y[i], x[j], y[j]),
+					(tour, nbEdges) -> kernels.geoLength(unitVectors, x, y, tour, nbEdges));
+		}
+	}
+
+	/**
+	 * Checks the lengths of the paths of a kernel: every prefix of a random
+	 * permutation, and random pairs (i, j) alone in a path i, j, i, i, ..., i
+	 * of 32 edges.
+	 */
+	private void checkPaths(String name, DistanceKernels kernels, int n, Distance reference, Length kernel) {
+		int[] tour = new int[n];
+		for (int i = 0; i < n; i++) {
+			tour[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = m_random.nextInt(i + 1);
+			int c = tour[i];
+			tour[i] = tour[j];
+			tour[j] = c;
+		}
+		long expected = 0;
+		for (int k = 0; k < n; k++) {
+			if (k > 0) {
+				expected += reference.get(tour[k - 1], tour[k]);
+			}
+			compare(name, kernels, "path of " + k + " edges", kernel.get(tour, k), expected);
+		}
+
+		int[] pair = new int[33];
+		for (int p = 0; p < NB_PAIRS; p++) {
+			int i = m_random.nextInt(n);
+			int j = m_random.nextInt(n);
+			Arrays.fill(pair, i);
+			pair[1 + m_random.nextInt(31)] = j;
+			compare(name, kernels, "pair " + i + " " + j, kernel.get(pair, 32), 2 * reference.get(i, j)
+					+ 30 * reference.get(i, i));
+		}
+	}
+
+	/** Counts a comparison, and prints it if the values differ. */
+	private void compare(String name, DistanceKernels kernels, String what, long value, long expected) {
+		m_nbChecks++;
+		if (value != expected) {
+			m_nbErrors++;
+			if (m_nbErrors <= 20) {
+				System.out.println(name + ", " + kernels.getName() + ", " + what + ": " + value + " instead of " + expected);
+			}
+		}
+	}
+
+	/** A distance between two cities. */
+	private interface Distance {
+		long get(int i, int j);
+	}
+
+	/** The length of a path computed by a kernel. */
+	private interface Length {
+		long get(int[] tour, int nbEdges);
+	}
+}